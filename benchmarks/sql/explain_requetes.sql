@@ -0,0 +1,98 @@
+-- Formes SQL des requêtes de DeclarationRepository / UtilisateurService, telles qu'émises
+-- par Hibernate, sur le jeu de seed_explain.sql (agent 7, poste 7).
+-- Usage : psql -d <base_de_test> -f benchmarks/sql/explain_requetes.sql
+
+-- [Q1] findPageByUtilisateurId : première page d'un agent (curseur sentinelle)
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.id, d.numero_reference, t.id, t.libelle_type_document, dec.nom, u.matricule, cp.nom, mp.nom, sp.nom
+FROM declarations d
+LEFT JOIN declarants dec ON dec.id = d.declarant_id
+LEFT JOIN types_document t ON t.id = d.type_document_id
+LEFT JOIN utilisateurs u ON u.id = d.utilisateur_id
+LEFT JOIN utilisateurs cp ON cp.id = d.cree_par_id
+LEFT JOIN utilisateurs mp ON mp.id = d.modifie_par_id
+LEFT JOIN utilisateurs sp ON sp.id = d.supprime_par_id
+WHERE d.utilisateur_id = 7 AND d.supprime = false
+  AND d.cree_le <= '9999-12-31' AND (d.cree_le < '9999-12-31' OR d.id < 9223372036854775807)
+ORDER BY d.cree_le DESC, d.id DESC
+LIMIT 51;
+
+-- [Q2] findPageByPostePoliceId : première page d'un poste (colonne recopiée declarations.poste_id, V5)
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.id, d.numero_reference, t.id, t.libelle_type_document, dec.nom, u.matricule, cp.nom, mp.nom, sp.nom
+FROM declarations d
+LEFT JOIN declarants dec ON dec.id = d.declarant_id
+LEFT JOIN types_document t ON t.id = d.type_document_id
+LEFT JOIN utilisateurs u ON u.id = d.utilisateur_id
+LEFT JOIN utilisateurs cp ON cp.id = d.cree_par_id
+LEFT JOIN utilisateurs mp ON mp.id = d.modifie_par_id
+LEFT JOIN utilisateurs sp ON sp.id = d.supprime_par_id
+WHERE d.poste_id = 7 AND d.supprime = false
+  AND d.cree_le <= '9999-12-31' AND (d.cree_le < '9999-12-31' OR d.id < 9223372036854775807)
+ORDER BY d.cree_le DESC, d.id DESC
+LIMIT 51;
+
+-- [Q3] findPageByPostePoliceId filtré sur un statut rare
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.id, d.numero_reference
+FROM declarations d
+WHERE d.poste_id = 7 AND d.supprime = false AND d.statut = 'BROUILLON'
+  AND d.cree_le <= '9999-12-31' AND (d.cree_le < '9999-12-31' OR d.id < 9223372036854775807)
+ORDER BY d.cree_le DESC, d.id DESC
+LIMIT 51;
+
+-- Statistiques : COUNT(*) en JPQL (COUNT(d) est rendu count(d.id), qui oblige à lire la table)
+-- [Q4] compterParStatut : tableau de bord global
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.statut, d.supprime, count(*) FROM declarations d GROUP BY d.statut, d.supprime;
+
+-- [Q5] compterParStatutPourPoste
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.statut, d.supprime, count(*)
+FROM declarations d
+WHERE d.poste_id = 7 GROUP BY d.statut, d.supprime;
+
+-- [Q6] compterParStatutPourUtilisateur
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.statut, d.supprime, count(*) FROM declarations d WHERE d.utilisateur_id = 7 GROUP BY d.statut, d.supprime;
+
+-- [Q7] findByStatut / countByStatutAndSupprimeTrue : statut + supprime
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT count(*) FROM declarations d WHERE d.statut = 'REJETEE' AND d.supprime = true;
+
+-- [Q8] findBySupprimeTrue : corbeille globale
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.id, d.numero_reference FROM declarations d WHERE d.supprime = true;
+
+-- [Q9] findPageByPostePoliceId (supprime = true) : corbeille d'un poste
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.id, d.numero_reference
+FROM declarations d
+WHERE d.poste_id = 7 AND d.supprime = true
+ORDER BY d.cree_le DESC, d.id DESC
+LIMIT 51;
+
+-- [Q10] findByDeclarantId (et contrôle de clé étrangère à la suppression d'un déclarant)
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.id FROM declarations d WHERE d.declarant_id = '3df8815a-5b7d-aac0-d1d6-d244817f6881' AND d.supprime = false;
+
+-- [Q11] Contrôle de clé étrangère à la suppression d'un type
+-- sans déclaration (type 999) : pire cas, aucune ligne trouvée
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT 1 FROM declarations d WHERE d.type_document_id = 999 LIMIT 1;
+
+-- [Q12] Contrôles de clés étrangères à la suppression d'un utilisateur
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT 1 FROM declarations d WHERE d.cree_par_id = 7 LIMIT 1;
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT 1 FROM declarations d WHERE d.modifie_par_id = 7 LIMIT 1;
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT 1 FROM declarations d WHERE d.supprime_par_id = 7 LIMIT 1;
+
+-- [Q13] streamPourRecus : récépissés d'un poste sur une période (export ZIP)
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT d.id, d.numero_reference
+FROM declarations d
+WHERE d.poste_id = 7 AND d.supprime = false
+  AND d.cree_le >= '2025-01-01' AND d.cree_le < '2025-02-01'
+ORDER BY d.cree_le, d.id;
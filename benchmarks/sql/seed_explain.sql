@@ -0,0 +1,51 @@
+-- Jeu de données volumineux pour vérifier les index (EXPLAIN) sur une base migrée par Flyway.
+-- 200 postes, 2 000 agents, 12 types de document, 1 000 000 déclarants, 3 000 000 déclarations.
+-- Répartition proche de la production : 50 % validées, 35 % enregistrées, 8 % rejetées,
+-- 7 % brouillons ; 3 % supprimées ; 20 % modifiées ; créations étalées sur trois ans.
+-- Usage : psql -d <base_de_test> -f benchmarks/sql/seed_explain.sql   (jamais en production)
+
+INSERT INTO postes_police (actif, code_unique, nom, adresse, telephone)
+SELECT true, 'POSTE-' || lpad(p::text, 3, '0'), 'Poste ' || p, 'Adresse ' || p, '+223 20 00 ' || lpad(p::text, 4, '0')
+FROM generate_series(1, 200) p;
+
+INSERT INTO types_document (code_type_document, libelle_type_document)
+SELECT 'TYPE-' || t, 'Type de document ' || t
+FROM generate_series(1, 12) t;
+
+INSERT INTO utilisateurs (actif, is_deleted, poste_id, matricule, nom, prenom, email, mot_de_passe_hash)
+SELECT true, false, (SELECT min(id) FROM postes_police) + (u % 200), 'AGT-' || lpad(u::text, 5, '0'),
+       'NOM' || u, 'Prenom' || u, 'agent' || u || '@police.ml', '$2a$10$hash'
+FROM generate_series(1, 2000) u;
+
+INSERT INTO declarants (id, nom, prenom, telephone, email, adresse, num_nina, date_naissance, lieu_naissance)
+SELECT md5('declarant' || i)::uuid, 'NOM' || i, 'Prenom' || i, '+223' || lpad(i::text, 8, '0'),
+       CASE WHEN i % 3 = 0 THEN 'declarant' || i || '@example.ml' END,
+       'Adresse ' || i, 'NINA' || lpad(i::text, 11, '0'),
+       date '1960-01-01' + (i % 15000), 'Bamako'
+FROM generate_series(1, 1000000) i;
+
+INSERT INTO declarations (date_declaration, date_perte, supprime, cree_le, cree_par_id, modifie_le, modifie_par_id,
+                          supprime_le, supprime_par_id, type_document_id, utilisateur_id, declarant_id, statut,
+                          numero_reference, numero_document, circonstances, lieu_perte)
+SELECT cree_le::date, cree_le::date - 3, supprime, cree_le, agent,
+       CASE WHEN i % 5 = 0 THEN cree_le + interval '2 days' END,
+       CASE WHEN i % 5 = 0 THEN agent END,
+       CASE WHEN supprime THEN cree_le + interval '5 days' END,
+       CASE WHEN supprime THEN agent END,
+       (SELECT min(id) FROM types_document) + (i % 12), agent,
+       md5('declarant' || (1 + (i::bigint * 7919) % 1000000))::uuid,
+       CASE WHEN r < 50 THEN 'VALIDEE' WHEN r < 85 THEN 'ENREGISTREE' WHEN r < 93 THEN 'REJETEE' ELSE 'BROUILLON' END,
+       'DECL-SEED-' || lpad(i::text, 8, '0'), 'DOC' || i, 'Perdu lors d''un déplacement', 'Bamako'
+FROM (
+    SELECT i,
+           (SELECT min(id) FROM utilisateurs) + (i % 2000) AS agent,
+           (i * 37) % 100 AS r,
+           i % 33 = 0 AS supprime,
+           timestamp '2023-10-01' + (i * interval '31 seconds') AS cree_le
+    FROM generate_series(1, 3000000) i
+) s;
+
+-- Poste recopié (V5), comme le fait DeclarationService à la création
+UPDATE declarations d SET poste_id = u.poste_id FROM utilisateurs u WHERE u.id = d.utilisateur_id;
+
+VACUUM ANALYZE;
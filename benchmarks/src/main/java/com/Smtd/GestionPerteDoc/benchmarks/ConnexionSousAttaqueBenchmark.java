@@ -0,0 +1,95 @@
+package com.Smtd.GestionPerteDoc.benchmarks;
+
+import com.Smtd.GestionPerteDoc.security.services.LimiteurConnexionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de charge de la connexion : latence d'un utilisateur légitime pendant une attaque
+ * par bourrage d'identifiants, avec et sans limitation des tentatives.
+ *
+ * Chaque appel reproduit AuthController.login sans HTTP ni base : limites, puis BCrypt
+ * (coût de l'application, gestionpertedoc.app.motDePasse.cout), puis échec compté. Trois attaquants, chacun depuis
+ * sa propre adresse, essaient 100 comptes par seconde avec un mauvais mot de passe ; les
+ * utilisateurs légitimes viennent d'adresses et de comptes différents à chaque connexion.
+ * Seule la ligne utilisateurLegitime du groupe "attaque" compte (le temps des attaquants
+ * inclut leur pause) ; le groupe "seul" donne la référence sans attaque.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 4)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Group)
+public class ConnexionSousAttaqueBenchmark {
+
+    private static final String MOT_DE_PASSE = "motdepasse-legitime";
+    // gestionpertedoc.app.motDePasse.cout dans application.properties
+    private static final int COUT_BCRYPT = 12;
+    private static final long PAUSE_ATTAQUANT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Param({"false", "true"})
+    public boolean limiteur;
+
+    private PasswordEncoder encodeur;
+    private String hash;
+    private LimiteurConnexionService limiteurConnexion;
+
+    private final AtomicInteger utilisateurs = new AtomicInteger();
+    private final AtomicInteger attaquants = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Attaquant {
+        String ip;
+        int essai;
+    }
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        encodeur = new BCryptPasswordEncoder(COUT_BCRYPT);
+        hash = encodeur.encode(MOT_DE_PASSE);
+        // Valeurs par défaut de application.properties
+        limiteurConnexion = new LimiteurConnexionService(new SimpleMeterRegistry(), 60, 30, 10, 8192);
+    }
+
+    private boolean connexion(String email, String ip, String motDePasse) {
+        if (limiteur && limiteurConnexion.autoriser(email, ip).isPresent()) return false;
+        boolean reussie = encodeur.matches(motDePasse, hash);
+        if (!reussie && limiteur) limiteurConnexion.enregistrerEchec(email);
+        return reussie;
+    }
+
+    private boolean connexionLegitime() {
+        int n = utilisateurs.incrementAndGet();
+        return connexion("agent" + (n % 500) + "@police.ml", "10.0." + ((n >> 8) & 0xFF) + "." + (n & 0xFF), MOT_DE_PASSE);
+    }
+
+    @Benchmark
+    @Group("attaque")
+    @GroupThreads(1)
+    public boolean utilisateurLegitime() {
+        return connexionLegitime();
+    }
+
+    @Benchmark
+    @Group("attaque")
+    @GroupThreads(3)
+    public boolean attaquant(Attaquant attaquant) {
+        if (attaquant.ip == null) attaquant.ip = "203.0.113." + attaquants.incrementAndGet();
+        LockSupport.parkNanos(PAUSE_ATTAQUANT_NANOS);
+        return connexion("cible" + attaquant.essai++ + "@exemple.ml", attaquant.ip, "123456");
+    }
+
+    @Benchmark
+    @Group("seul")
+    @GroupThreads(1)
+    public boolean utilisateurSeul() {
+        return connexionLegitime();
+    }
+}
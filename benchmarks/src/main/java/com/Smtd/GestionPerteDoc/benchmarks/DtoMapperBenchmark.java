@@ -0,0 +1,40 @@
+package com.Smtd.GestionPerteDoc.benchmarks;
+
+import com.Smtd.GestionPerteDoc.dtos.DTOMapper;
+import com.Smtd.GestionPerteDoc.dtos.DeclarationDTO;
+import com.Smtd.GestionPerteDoc.dtos.DeclarationLigneDTO;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion d'une déclaration en DTO : depuis l'entité (détail) et depuis la projection (listes).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DtoMapperBenchmark {
+
+    private Declaration declaration;
+    private DeclarationLigneDTO ligne;
+
+    @Setup
+    public void preparer() {
+        declaration = Fixtures.declaration();
+        ligne = Fixtures.ligne();
+    }
+
+    @Benchmark
+    public DeclarationDTO depuisEntite() {
+        return DTOMapper.toDeclarationDTO(declaration);
+    }
+
+    @Benchmark
+    public DeclarationDTO depuisProjection() {
+        return DTOMapper.toDeclarationDTO(ligne);
+    }
+}
@@ -0,0 +1,106 @@
+package com.Smtd.GestionPerteDoc.benchmarks;
+
+import com.Smtd.GestionPerteDoc.dtos.DeclarationLigneDTO;
+import com.Smtd.GestionPerteDoc.entities.Declarant;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.entities.PostePolice;
+import com.Smtd.GestionPerteDoc.entities.Role;
+import com.Smtd.GestionPerteDoc.entities.TypeDocument;
+import com.Smtd.GestionPerteDoc.entities.Utilisateur;
+import com.Smtd.GestionPerteDoc.enums.StatutDeclaration;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Jeux de données des benchmarks, proches des enregistrements de production :
+ * tous les champs renseignés, graphe d'entités complet (déclarant, type, agents).
+ */
+final class Fixtures {
+
+    private Fixtures() {}
+
+    static PostePolice poste() {
+        PostePolice poste = new PostePolice();
+        poste.setId(1L);
+        poste.setCodeUnique("POSTE-001");
+        poste.setNom("Commissariat du 1er arrondissement");
+        poste.setAdresse("Avenue de la Nation, Bamako");
+        poste.setTelephone("+223 20 22 33 44");
+        return poste;
+    }
+
+    static Utilisateur agent() {
+        Role role = new Role();
+        role.setId(3L);
+        role.setLibelle("ROLE_AGENT");
+
+        Utilisateur agent = new Utilisateur();
+        agent.setId(42L);
+        agent.setEmail("moussa.traore@police.ml");
+        agent.setNom("TRAORE");
+        agent.setPrenom("Moussa");
+        agent.setMatricule("AGT-4821");
+        agent.setActif(true);
+        agent.setPostePolice(poste());
+        agent.setRoles(Set.of(role));
+        return agent;
+    }
+
+    static Declaration declaration() {
+        Declarant declarant = new Declarant();
+        declarant.setId(UUID.fromString("0f6b7c3e-2a51-4d8e-9b1a-5c2d7e8f9a10"));
+        declarant.setNom("DIOP");
+        declarant.setPrenom("Fatou");
+        declarant.setTelephone("+22370000003");
+        declarant.setEmail("fatou.diop@example.ml");
+        declarant.setAdresse("Rue 312, Porte 45, Hamdallaye ACI 2000, Bamako");
+        declarant.setNumNina("12345678901234A");
+        declarant.setNumCarteIdentite("CNI-ML-0098765");
+        declarant.setDateNaissance(new Date(642_211_200_000L));
+        declarant.setLieuNaissance("Bamako");
+
+        TypeDocument type = new TypeDocument();
+        type.setId(1L);
+        type.setCodeTypeDocument("PASSEPORT");
+        type.setLibelleTypeDocument("Passeport");
+
+        Utilisateur agent = agent();
+        Date maintenant = new Date();
+
+        Declaration declaration = new Declaration();
+        declaration.setId(18_734L);
+        declaration.setNumeroReference("DECL-POSTE-001-2025-018734");
+        declaration.setTypeDocument(type);
+        declaration.setNumeroDocument("P1234567");
+        declaration.setDatePerte(new Date(maintenant.getTime() - 3 * 86_400_000L));
+        declaration.setLieuPerte("Marché de Médine, Bamako");
+        declaration.setCirconstances("Sacoche oubliée dans un taxi entre le marché de Médine et l'ACI 2000.");
+        declaration.setDateDeclaration(maintenant);
+        declaration.setStatut(StatutDeclaration.VALIDEE);
+        declaration.setDeclarant(declarant);
+        declaration.setUtilisateur(agent);
+        declaration.setCreePar(agent);
+        declaration.setCreeLe(maintenant);
+        declaration.setModifiePar(agent);
+        declaration.setModifieLe(maintenant);
+        return declaration;
+    }
+
+    static DeclarationLigneDTO ligne() {
+        Declaration d = declaration();
+        Declarant dc = d.getDeclarant();
+        Utilisateur u = d.getUtilisateur();
+        return new DeclarationLigneDTO(
+                d.getId(), d.getNumeroReference(), d.getTypeDocument().getId(),
+                d.getTypeDocument().getLibelleTypeDocument(), d.getNumeroDocument(), d.getDatePerte(),
+                d.getLieuPerte(), d.getCirconstances(), d.getDateDeclaration(), d.getStatut(),
+                u.getMatricule(), u.getNom(), u.getPrenom(),
+                dc.getNom(), dc.getPrenom(), dc.getTelephone(), dc.getNumNina(), dc.getNumPassePort(),
+                dc.getNumCarteIdentite(), dc.getEmail(), dc.getAdresse(), dc.getDateNaissance(),
+                dc.getLieuNaissance(),
+                u.getNom(), d.getCreeLe(), u.getNom(), u.getPrenom(), u.getMatricule(), d.getModifieLe(),
+                null, null);
+    }
+}
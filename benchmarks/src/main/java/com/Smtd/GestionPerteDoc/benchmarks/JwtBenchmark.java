@@ -0,0 +1,50 @@
+package com.Smtd.GestionPerteDoc.benchmarks;
+
+import com.Smtd.GestionPerteDoc.entities.Utilisateur;
+import com.Smtd.GestionPerteDoc.security.jwt.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Émission d'un jeton à la connexion et lecture (signature + expiration + claims)
+ * faite par le filtre JWT à chaque requête authentifiée, sans cache (premier passage
+ * d'un jeton) et depuis le cache des jetons déjà vérifiés (requêtes suivantes).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtBenchmark {
+
+    private JwtUtil jwtUtil;
+    private JwtUtil jwtUtilCache;
+    private Utilisateur agent;
+    private String jeton;
+
+    @Setup
+    public void preparer() {
+        jwtUtil = new JwtUtil(0);
+        jwtUtilCache = new JwtUtil(10_000);
+        agent = Fixtures.agent();
+        jeton = jwtUtil.generateToken(agent);
+    }
+
+    @Benchmark
+    public String genererJeton() {
+        return jwtUtil.generateToken(agent);
+    }
+
+    @Benchmark
+    public Claims lireClaims() {
+        return jwtUtil.lireClaims(jeton);
+    }
+
+    @Benchmark
+    public Claims lireClaimsEnCache() {
+        return jwtUtilCache.lireClaims(jeton);
+    }
+}
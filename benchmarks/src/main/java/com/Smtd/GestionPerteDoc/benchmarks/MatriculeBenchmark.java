@@ -0,0 +1,77 @@
+package com.Smtd.GestionPerteDoc.benchmarks;
+
+import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
+import com.Smtd.GestionPerteDoc.services.UtilisateurService;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération d'un matricule unique (préfixe + 4 chiffres tirés au hasard, vérifiés en base).
+ *
+ * Le paramètre "occupes" fixe le nombre de matricules déjà pris sur les 10 000 possibles
+ * du préfixe : le coût croît avec les collisions. Le dépôt est remplacé par un ensemble
+ * en mémoire ; en moyenne 1 / (1 - occupes / 10 000) appels à existsByMatricule par
+ * matricule, qui sont autant d'allers-retours SQL en production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatriculeBenchmark {
+
+    private static final String PREFIXE = "AGT-";
+
+    @Param({"0", "5000", "9000"})
+    public int occupes;
+
+    private UtilisateurService service;
+    private MethodHandle genererMatriculeUnique;
+
+    @Setup
+    public void preparer() throws Exception {
+        Set<String> existants = new HashSet<>();
+        Random random = new Random(42);
+        while (existants.size() < occupes) {
+            existants.add(PREFIXE + String.format("%04d", random.nextInt(10_000)));
+        }
+
+        UtilisateurRepository depot = (UtilisateurRepository) Proxy.newProxyInstance(
+                UtilisateurRepository.class.getClassLoader(),
+                new Class<?>[] { UtilisateurRepository.class },
+                (proxy, methode, args) -> {
+                    if (methode.getName().equals("existsByMatricule")) {
+                        return existants.contains((String) args[0]);
+                    }
+                    throw new UnsupportedOperationException(methode.getName());
+                });
+
+        // Seul le dépôt des utilisateurs est utilisé par la génération du matricule
+        Constructor<?> constructeur = UtilisateurService.class.getDeclaredConstructors()[0];
+        Object[] dependances = new Object[constructeur.getParameterCount()];
+        Class<?>[] types = constructeur.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == UtilisateurRepository.class) dependances[i] = depot;
+        }
+        service = (UtilisateurService) constructeur.newInstance(dependances);
+
+        genererMatriculeUnique = MethodHandles.privateLookupIn(UtilisateurService.class, MethodHandles.lookup())
+                .findVirtual(UtilisateurService.class, "genererMatriculeUnique",
+                        MethodType.methodType(String.class, String.class));
+    }
+
+    @Benchmark
+    public String genererMatricule() throws Throwable {
+        return (String) genererMatriculeUnique.invoke(service, PREFIXE);
+    }
+}
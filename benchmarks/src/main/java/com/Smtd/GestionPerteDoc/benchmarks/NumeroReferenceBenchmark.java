@@ -0,0 +1,77 @@
+package com.Smtd.GestionPerteDoc.benchmarks;
+
+import com.Smtd.GestionPerteDoc.services.NumeroReferenceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Attribution des numéros de référence : distribution en mémoire du bloc réservé,
+ * code du poste en cache et mise en forme, seul puis sous contention (4 threads).
+ *
+ * La séquence PostgreSQL est simulée en mémoire : un appel par bloc de "tailleBloc"
+ * numéros, dont le coût réseau n'est pas compté ici.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NumeroReferenceBenchmark {
+
+    @Param({"50"})
+    public int tailleBloc;
+
+    private NumeroReferenceService service;
+
+    @Setup
+    public void preparer() {
+        service = new NumeroReferenceService(new SequenceEnMemoire(tailleBloc), tailleBloc);
+    }
+
+    @Benchmark
+    public String referencePoste() {
+        return service.generateNumeroReference(1L);
+    }
+
+    @Benchmark
+    public String referenceSansPoste() {
+        return service.generateNumeroReference(null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String referencePosteConcurrente() {
+        return service.generateNumeroReference(1L);
+    }
+
+    // Remplace les trois requêtes du service : pas de la séquence, nextval et code du poste
+    static final class SequenceEnMemoire extends JdbcTemplate {
+        private final AtomicLong valeur = new AtomicLong(1);
+        private final int pas;
+
+        SequenceEnMemoire(int pas) {
+            this.pas = pas;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T queryForObject(String sql, Class<T> type) {
+            return (T) Long.valueOf(valeur.getAndAdd(pas));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> type, Object... args) {
+            // Séquence créée par la migration V6 avec un pas égal à la taille de bloc
+            if (sql.contains("pg_sequences")) {
+                return (List<T>) List.of((long) pas);
+            }
+            return (List<T>) List.of("POSTE-001");
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.Smtd.GestionPerteDoc.benchmarks;
+
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.services.PdfGeneratorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération du récépissé PDF à partir du gabarit compilé, et compilation du gabarit
+ * (lecture du modèle Word et découpage des champs, qui remplace l'ancien remplacement
+ * des marqueurs à chaque PDF). "ecrireRecu" écrit dans un flux, comme la réponse HTTP :
+ * l'écart d'allocation avec "genererRecu" est la copie du document en mémoire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PdfBenchmark {
+
+    private Declaration declaration;
+
+    @Setup
+    public void preparer() throws Exception {
+        declaration = Fixtures.declaration();
+        PdfGeneratorService.generateDeclarationPdf(declaration);
+    }
+
+    @Benchmark
+    public byte[] genererRecu() throws Exception {
+        return PdfGeneratorService.generateDeclarationPdf(declaration);
+    }
+
+    @Benchmark
+    public long ecrireRecu() throws Exception {
+        return PdfGeneratorService.ecrireDeclarationPdf(declaration, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public Object compilerGabarit() throws Exception {
+        return PdfGeneratorService.compilerTemplate();
+    }
+}
@@ -6,7 +6,7 @@ import {
 import { Add, MoreVert, Edit, Delete, Visibility, Restore, Download } from '@mui/icons-material';
 import { DataGrid } from '@mui/x-data-grid';
 import { frFR } from '@mui/x-data-grid/locales';
-import { useQuery, useMutation, useQueryClient } from 'react-query';
+import { useInfiniteQuery, useMutation, useQueryClient } from 'react-query';
 import { declarationService } from '../../services/declarationService';
 import { usePermissions } from '../../hooks/usePermissions';
 import { useNavigate } from 'react-router-dom';
@@ -35,13 +35,24 @@ const DeclarationList = ({ type = 'actives', scope = 'own' }) => {
     return declarationService.listerDeclarations;
   };
 
-  const { data: declarationsData, isLoading, error } = useQuery(
+  // Listes paginées par curseur : chaque page donne le curseur de la suivante
+  const fetchPage = getFetchFunction();
+  const {
+    data: declarationsData, isLoading, error,
+    fetchNextPage, hasNextPage, isFetchingNextPage,
+  } = useInfiniteQuery(
     ['declarations', type, scope, user?.id],
-    getFetchFunction(),
-    { enabled: !!user }
+    ({ pageParam }) => fetchPage(pageParam),
+    {
+      enabled: !!user,
+      getNextPageParam: (dernierePage) => dernierePage?.curseurSuivant || undefined,
+    }
   );
 
-  const declarations = declarationsData?.declarations || [];
+  const declarations = useMemo(
+    () => (declarationsData?.pages || []).flatMap((page) => page?.declarations || []),
+    [declarationsData]
+  );
 
   // 🔹 Mutations
   const deleteMutation = useMutation(
@@ -232,6 +243,18 @@ const DeclarationList = ({ type = 'actives', scope = 'own' }) => {
         />
       </Card>
 
+      {hasNextPage && (
+        <Box sx={{ display: 'flex', justifyContent: 'center', mt: 2 }}>
+          <Button
+            variant="outlined"
+            onClick={() => fetchNextPage()}
+            disabled={isFetchingNextPage}
+          >
+            {isFetchingNextPage ? 'Chargement...' : 'Charger plus de déclarations'}
+          </Button>
+        </Box>
+      )}
+
       <Menu anchorEl={anchorEl} open={Boolean(anchorEl)} onClose={handleMenuClose}>
         <MenuItem onClick={handleViewDetails}>
           <Visibility sx={{ mr: 1 }} /> Voir les détails
@@ -13,27 +13,28 @@ export const declarationService = {
     return response.data;
   },
 
+  // Pages par curseur : la réponse donne curseurSuivant (null sur la dernière page)
   // Lister les déclarations actives de l'utilisateur
-  async listerDeclarationsActives() {
-    const response = await api.get('/declarations/actives');
+  async listerDeclarationsActives(curseur) {
+    const response = await api.get('/declarations/actives', { params: { curseur } });
     return response.data;
   },
 
   // Lister les déclarations actives du poste
-  async listerDeclarationsActivesPoste() {
-    const response = await api.get('/declarations/actives/poste');
+  async listerDeclarationsActivesPoste(curseur) {
+    const response = await api.get('/declarations/actives/poste', { params: { curseur } });
     return response.data;
   },
 
   // Lister les déclarations supprimées de l'utilisateur
-  async listerDeclarationsSupprimees() {
-    const response = await api.get('/declarations/supprimees');
+  async listerDeclarationsSupprimees(curseur) {
+    const response = await api.get('/declarations/supprimees', { params: { curseur } });
     return response.data;
   },
 
   // Lister les déclarations supprimées du poste
-  async listerDeclarationsSupprimeesPoste() {
-    const response = await api.get('/declarations/supprimees/poste');
+  async listerDeclarationsSupprimeesPoste(curseur) {
+    const response = await api.get('/declarations/supprimees/poste', { params: { curseur } });
     return response.data;
   },
 
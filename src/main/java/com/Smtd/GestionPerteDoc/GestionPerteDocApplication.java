@@ -2,8 +2,10 @@ package com.Smtd.GestionPerteDoc;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class GestionPerteDocApplication {
 
 	public static void main(String[] args) {
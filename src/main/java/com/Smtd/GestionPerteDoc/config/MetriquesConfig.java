@@ -0,0 +1,30 @@
+package com.Smtd.GestionPerteDoc.config;
+
+import com.Smtd.GestionPerteDoc.entities.Utilisateur;
+
+/**
+ * Conventions communes des métriques applicatives (préfixe "gestionpertedoc.").
+ *
+ * Les métriques HTTP (http.server.requests) portent l'endpoint (uri) et le résultat
+ * (outcome), avec un histogramme complet : le poste n'y est pas ajouté, il multiplierait
+ * chaque série d'histogramme par le nombre de postes. Il en va de même des timers des
+ * services : la vue par poste passe par des compteurs (tag {@link #TAG_POSTE}).
+ */
+public final class MetriquesConfig {
+
+    public static final String TAG_POSTE = "poste";
+    public static final String TAG_RESULTAT = "outcome";
+
+    // Valeur du tag quand le poste est inconnu : les séries gardent toujours les mêmes clés
+    public static final String AUCUN_POSTE = "aucun";
+
+    private MetriquesConfig() {
+    }
+
+    public static String tagPoste(Utilisateur utilisateur) {
+        if (utilisateur == null || utilisateur.getPostePolice() == null || utilisateur.getPostePolice().getId() == null) {
+            return AUCUN_POSTE;
+        }
+        return String.valueOf(utilisateur.getPostePolice().getId());
+    }
+}
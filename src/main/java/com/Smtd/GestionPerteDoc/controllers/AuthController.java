@@ -2,19 +2,24 @@ package com.Smtd.GestionPerteDoc.controllers;
 
 import com.Smtd.GestionPerteDoc.dtos.AuthRequest;
 import com.Smtd.GestionPerteDoc.entities.Utilisateur;
-import com.Smtd.GestionPerteDoc.services.UtilisateurService;
 import com.Smtd.GestionPerteDoc.security.jwt.JwtUtil;
+import com.Smtd.GestionPerteDoc.security.services.CustomUserDetails;
+import com.Smtd.GestionPerteDoc.security.services.HachageMotDePasseService;
+import com.Smtd.GestionPerteDoc.security.services.LimiteurConnexionService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -24,20 +29,28 @@ public class AuthController {
 
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
-    private final UtilisateurService utilisateurService;
+    private final LimiteurConnexionService limiteurConnexion;
 
     // === LOGIN ===
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody AuthRequest request) {
+    public ResponseEntity<?> login(@RequestBody AuthRequest request, HttpServletRequest httpRequest) {
+        // Limites vérifiées avant le hachage du mot de passe : un refus ne coûte rien
+        Optional<LimiteurConnexionService.Refus> refus = limiteurConnexion.autoriser(request.getEmail(), httpRequest.getRemoteAddr());
+        if (refus.isPresent()) {
+            long delai = refus.get().reessayerDansSecondes();
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(delai))
+                    .body(Map.of("erreur", "Trop de tentatives de connexion, réessayez dans " + delai + " secondes"));
+        }
+
         try {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
             );
 
-            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-            String token = jwtUtil.generateToken(userDetails.getUsername());
-
-            Utilisateur utilisateur = utilisateurService.findByEmail(request.getEmail());
+            // Utilisateur déjà chargé par l'authentification : pas de seconde requête
+            Utilisateur utilisateur = ((CustomUserDetails) authentication.getPrincipal()).getUtilisateur();
+            String token = jwtUtil.generateToken(utilisateur);
 
             Map<String, Object> response = new HashMap<>();
             response.put("token", token);
@@ -57,9 +70,15 @@ public class AuthController {
             return ResponseEntity.ok(response);
 
         } catch (AuthenticationException e) {
+            limiteurConnexion.enregistrerEchec(request.getEmail());
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("erreur", "Email ou mot de passe invalide");
             return ResponseEntity.status(401).body(errorResponse);
+        } catch (HachageMotDePasseService.HachageSatureException e) {
+            // Pool BCrypt saturé : refus immédiat plutôt qu'une file d'attente sans fin
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("erreur", "Service de connexion surchargé, réessayez dans un instant"));
         }
     }
 
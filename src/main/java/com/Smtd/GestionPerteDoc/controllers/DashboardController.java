@@ -37,7 +37,7 @@ public class DashboardController {
             }
 
            
-            PosteStatsDTO stats = declarationService.getPosteStats();
+            PosteStatsDTO stats = declarationService.getPosteStats(null);
             
           
             Map<String, Object> response = new HashMap<>();
@@ -90,7 +90,7 @@ public class DashboardController {
             throw new RuntimeException("Poste non défini pour l'utilisateur admin");
         }
 
-        return declarationService.getPosteStats();
+        return declarationService.getPosteStats(posteCible);
     }
 
 
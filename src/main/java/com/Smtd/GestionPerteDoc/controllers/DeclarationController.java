@@ -2,27 +2,27 @@ package com.Smtd.GestionPerteDoc.controllers;
 
 import com.Smtd.GestionPerteDoc.dtos.DeclarationDTO;
 import com.Smtd.GestionPerteDoc.dtos.DTOMapper;
+import com.Smtd.GestionPerteDoc.dtos.PageDeclarationsDTO;
 import com.Smtd.GestionPerteDoc.dtos.PosteStatsDTO;
 import com.Smtd.GestionPerteDoc.dtos.RechercherDeclarantRequest;
 import com.Smtd.GestionPerteDoc.entities.Declarant;
 import com.Smtd.GestionPerteDoc.entities.Declaration;
-import com.Smtd.GestionPerteDoc.entities.TypeDocument;
 import com.Smtd.GestionPerteDoc.entities.Utilisateur;
 import com.Smtd.GestionPerteDoc.enums.StatutDeclaration;
-import com.Smtd.GestionPerteDoc.repositories.DeclarationRepository;
-import com.Smtd.GestionPerteDoc.repositories.TypeDocumentRepository;
 import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
 import com.Smtd.GestionPerteDoc.security.services.CustomUserDetails;
-import com.Smtd.GestionPerteDoc.services.DeclarantService;
 import com.Smtd.GestionPerteDoc.services.DeclarationService;
-import com.Smtd.GestionPerteDoc.services.PdfGeneratorService;
+import com.Smtd.GestionPerteDoc.services.CacheRecuService;
 import com.Smtd.GestionPerteDoc.services.UtilisateurService;
-import com.Smtd.GestionPerteDoc.services.EmailService;
-import com.Smtd.GestionPerteDoc.services.NumeroReferenceService;
+import com.Smtd.GestionPerteDoc.services.ExportDeclarationService;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -30,7 +30,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.HashMap;
 import java.util.List;
@@ -45,11 +52,9 @@ import java.util.stream.Collectors;
 public class DeclarationController {
 
     private final DeclarationService declarationService;
-    private final EmailService emailService;
-    private final DeclarantService declarantService;
-    private final TypeDocumentRepository typeDocumentRepository;
-    private final NumeroReferenceService numeroReferenceService;
-    private final DeclarationRepository declarationRepository;
+    private final ExportDeclarationService exportDeclarationService;
+    private final CacheRecuService cacheRecuService;
+
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN','SUPERVISEUR','AGENT')")
     public ResponseEntity<?> creerDeclaration(@RequestBody Declaration declaration,
@@ -61,51 +66,8 @@ public class DeclarationController {
         }
 
         try {
-            Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
-
-            // ===== Trouver ou créer le déclarant =====
-            Declarant declarantFinal = declarantService.trouverOuCreerDeclarant(declaration.getDeclarant());
-            declaration.setDeclarant(declarantFinal);
-
-            // ===== Vérifier le type de document =====
-            TypeDocument typeDocument = typeDocumentRepository.findById(declaration.getTypeDocument().getId())
-                    .orElseThrow(() -> new RuntimeException(
-                            "Type de document non trouvé avec ID: " + declaration.getTypeDocument().getId()));
-            declaration.setTypeDocument(typeDocument);
-
-            // ===== Initialiser les champs de la déclaration =====
-            declaration.setUtilisateur(utilisateurConnecte);
-            declaration.setCreePar(utilisateurConnecte);
-            declaration.setCreeLe(new Date());
-            declaration.setDateDeclaration(new Date());
-            declaration.setSupprime(false);
-
-            if (declaration.getStatut() == null) declaration.setStatut(StatutDeclaration.ENREGISTREE);
-            if (declaration.getNumeroReference() == null || declaration.getNumeroReference().isEmpty()) {
-                declaration.setNumeroReference(numeroReferenceService.generateNumeroReference());
-            }
-
-            // ===== Sauvegarder la déclaration =====
-            Declaration saved = declarationRepository.save(declaration);
-            declarationRepository.flush();
-
-            // ===== ENVOI EMAIL AVEC PDF =====
-            try {
-                if (saved.getDeclarant() != null && saved.getDeclarant().getEmail() != null &&
-                    !saved.getDeclarant().getEmail().isEmpty()) {
-
-                    byte[] pdfBytes = PdfGeneratorService.generateDeclarationPdf(saved);
-                    log.info("Envoi d'email à : {}", saved.getDeclarant().getEmail());
-                    emailService.envoyerEmailAvecPdf(
-                            saved.getDeclarant().getEmail(),
-                            pdfBytes,
-                            saved.getNumeroReference()
-                    );
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                
-            }
+            // ===== Déclarant, type, référence, sauvegarde et email : une seule transaction =====
+            Declaration saved = declarationService.creerDeclaration(declaration, userDetails.getUtilisateur());
 
             // ===== Réponse =====
             Map<String, Object> response = new HashMap<>();
@@ -231,52 +193,142 @@ public class DeclarationController {
 
     // ---------------- Mes déclarations actives ----------------
     @GetMapping("/actives")
-    public ResponseEntity<?> listerActives(@AuthenticationPrincipal CustomUserDetails userDetails) {
+    public ResponseEntity<?> listerActives(@RequestParam(required = false) String curseur,
+                                           @RequestParam(required = false) Integer taille,
+                                           @RequestParam(required = false) StatutDeclaration statut,
+                                           @RequestParam(required = false) Long typeDocumentId,
+                                           @AuthenticationPrincipal CustomUserDetails userDetails) {
         if (userDetails == null) return ResponseEntity.status(401).body(creerReponseErreur("Utilisateur non authentifié"));
 
-        Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
-        List<DeclarationDTO> declarations = declarationService.listerDeclarationsActivesParUtilisateur(utilisateurConnecte.getId())
-                .stream().map(DTOMapper::toDeclarationDTO).collect(Collectors.toList());
-
-        return ResponseEntity.ok(Map.of("total", declarations.size(), "declarations", declarations));
+        try {
+            Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
+            PageDeclarationsDTO page = declarationService.listerPageParUtilisateur(
+                    utilisateurConnecte.getId(), false, curseur, taille, statut, typeDocumentId);
+            return ResponseEntity.ok(reponsePage(page));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(creerReponseErreur(e.getMessage()));
+        }
     }
 
     // ---------------- Mes déclarations supprimées ----------------
     @GetMapping("/supprimees")
-    public ResponseEntity<?> listerSupprimees(@AuthenticationPrincipal CustomUserDetails userDetails) {
+    public ResponseEntity<?> listerSupprimees(@RequestParam(required = false) String curseur,
+                                              @RequestParam(required = false) Integer taille,
+                                              @RequestParam(required = false) StatutDeclaration statut,
+                                              @RequestParam(required = false) Long typeDocumentId,
+                                              @AuthenticationPrincipal CustomUserDetails userDetails) {
         if (userDetails == null) return ResponseEntity.status(401).body(creerReponseErreur("Utilisateur non authentifié"));
 
-        Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
-        List<DeclarationDTO> declarations = declarationService.listerDeclarationsSupprimeesParUtilisateur(utilisateurConnecte.getId())
-                .stream().map(DTOMapper::toDeclarationDTO).collect(Collectors.toList());
-
-        return ResponseEntity.ok(Map.of("total", declarations.size(), "declarations", declarations));
+        try {
+            Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
+            PageDeclarationsDTO page = declarationService.listerPageParUtilisateur(
+                    utilisateurConnecte.getId(), true, curseur, taille, statut, typeDocumentId);
+            return ResponseEntity.ok(reponsePage(page));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(creerReponseErreur(e.getMessage()));
+        }
     }
 
     // ---------------- Déclarations du poste actives ----------------
     @GetMapping("/actives/poste")
     @PreAuthorize("hasAnyRole('ADMIN','SUPERVISEUR')")
-    public ResponseEntity<?> listerActivesPoste(@AuthenticationPrincipal CustomUserDetails userDetails) {
+    public ResponseEntity<?> listerActivesPoste(@RequestParam(required = false) String curseur,
+                                                @RequestParam(required = false) Integer taille,
+                                                @RequestParam(required = false) StatutDeclaration statut,
+                                                @RequestParam(required = false) Long typeDocumentId,
+                                                @AuthenticationPrincipal CustomUserDetails userDetails) {
         if (userDetails == null) return ResponseEntity.status(401).body(creerReponseErreur("Utilisateur non authentifié"));
 
-        Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
-        List<DeclarationDTO> declarations = declarationService.listerDeclarationsActivesParPoste(utilisateurConnecte.getPostePolice().getId())
-                .stream().map(DTOMapper::toDeclarationDTO).collect(Collectors.toList());
-
-        return ResponseEntity.ok(Map.of("total", declarations.size(), "declarations", declarations));
+        try {
+            Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
+            PageDeclarationsDTO page = declarationService.listerPageParPoste(
+                    utilisateurConnecte.getPostePolice().getId(), false, curseur, taille, statut, typeDocumentId);
+            return ResponseEntity.ok(reponsePage(page));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(creerReponseErreur(e.getMessage()));
+        }
     }
 
     // ---------------- Déclarations du poste supprimées ----------------
     @GetMapping("/supprimees/poste")
     @PreAuthorize("hasAnyRole('ADMIN','SUPERVISEUR')")
-    public ResponseEntity<?> listerSupprimeesPoste(@AuthenticationPrincipal CustomUserDetails userDetails) {
+    public ResponseEntity<?> listerSupprimeesPoste(@RequestParam(required = false) String curseur,
+                                                   @RequestParam(required = false) Integer taille,
+                                                   @RequestParam(required = false) StatutDeclaration statut,
+                                                   @RequestParam(required = false) Long typeDocumentId,
+                                                   @AuthenticationPrincipal CustomUserDetails userDetails) {
         if (userDetails == null) return ResponseEntity.status(401).body(creerReponseErreur("Utilisateur non authentifié"));
 
+        try {
+            Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
+            PageDeclarationsDTO page = declarationService.listerPageParPoste(
+                    utilisateurConnecte.getPostePolice().getId(), true, curseur, taille, statut, typeDocumentId);
+            return ResponseEntity.ok(reponsePage(page));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(creerReponseErreur(e.getMessage()));
+        }
+    }
+
+    // ---------------- Export en flux (NDJSON / CSV) ----------------
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exporter(@RequestParam(defaultValue = "ndjson") String format,
+                         HttpServletResponse response) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Format d'export non supporté : " + format);
+            return;
+        }
+
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=declarations." + (csv ? "csv" : "ndjson"));
+
+        if (csv) {
+            exportDeclarationService.exporterCsv(response.getOutputStream());
+        } else {
+            exportDeclarationService.exporterNdjson(response.getOutputStream());
+        }
+    }
+
+    // ---------------- Récépissés d'un poste en ZIP ----------------
+    private static final int JOURS_MAX_EXPORT_RECUS = 31;
+
+    @GetMapping("/recus/zip")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPERVISEUR')")
+    public void exporterRecus(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au,
+                              @RequestParam(required = false) Long postePoliceId,
+                              @AuthenticationPrincipal CustomUserDetails userDetails,
+                              HttpServletResponse response) throws IOException {
         Utilisateur utilisateurConnecte = userDetails.getUtilisateur();
-        List<DeclarationDTO> declarations = declarationService.listerDeclarationsSupprimeesParPoste(utilisateurConnecte.getPostePolice().getId())
-                .stream().map(DTOMapper::toDeclarationDTO).collect(Collectors.toList());
+        Long postePropre = utilisateurConnecte.getPostePolice() != null ? utilisateurConnecte.getPostePolice().getId() : null;
 
-        return ResponseEntity.ok(Map.of("total", declarations.size(), "declarations", declarations));
+        // Un superviseur n'exporte que son poste ; un admin peut en choisir un autre
+        if (postePoliceId != null && !postePoliceId.equals(postePropre) && !utilisateurConnecte.hasRole("ROLE_ADMIN")) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Accès refusé à ce poste");
+            return;
+        }
+        Long posteCible = postePoliceId != null ? postePoliceId : postePropre;
+        if (posteCible == null) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Poste non défini pour l'utilisateur");
+            return;
+        }
+        if (au.isBefore(du) || ChronoUnit.DAYS.between(du, au) >= JOURS_MAX_EXPORT_RECUS) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(),
+                    "Période invalide (" + JOURS_MAX_EXPORT_RECUS + " jours au plus)");
+            return;
+        }
+
+        // Période [du, au] inclusive, en jours locaux
+        ZoneId zone = ZoneId.systemDefault();
+        Date debut = Date.from(du.atStartOfDay(zone).toInstant());
+        Date fin = Date.from(au.plusDays(1).atStartOfDay(zone).toInstant());
+
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=recus-poste-" + posteCible + "-" + du + "-" + au + ".zip");
+        exportDeclarationService.exporterRecusZip(posteCible, debut, fin, response.getOutputStream());
     }
 
     // ---------------- Statistiques ----------------
@@ -284,7 +336,10 @@ public class DeclarationController {
     public ResponseEntity<?> getPosteStats(@AuthenticationPrincipal CustomUserDetails userDetails) {
         if (userDetails == null) return ResponseEntity.status(401).body(creerReponseErreur("Utilisateur non authentifié"));
 
-        PosteStatsDTO stats = declarationService.getPosteStats();
+        Utilisateur utilisateur = userDetails.getUtilisateur();
+        if (utilisateur.getPostePolice() == null) return ResponseEntity.badRequest().body(creerReponseErreur("Poste non défini pour l'utilisateur"));
+
+        PosteStatsDTO stats = declarationService.getPosteStats(utilisateur.getPostePolice().getId());
         return ResponseEntity.ok(stats);
     }
 
@@ -339,24 +394,51 @@ public class DeclarationController {
     }
 
     @GetMapping("/{id}/pdf")
-    public ResponseEntity<byte[]> generatePdf(@PathVariable Long id) throws Exception {
-        Declaration declaration = declarationService.findById(id);
-        if (declaration == null) {
-            return ResponseEntity.notFound().build();
+    public void generatePdf(@PathVariable Long id, WebRequest webRequest,
+                            HttpServletResponse response) throws IOException {
+        Declaration declaration;
+        try {
+            declaration = declarationService.trouverParId(id);
+        } catch (RuntimeException e) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), e.getMessage());
+            return;
         }
 
-        byte[] pdfBytes = PdfGeneratorService.generateDeclarationPdf(declaration);
+        // Fichier ouvert avant tout en-tête : une éviction concurrente ne peut plus tronquer la réponse
+        try (CacheRecuService.RecuOuvert ouvert = cacheRecuService.ouvrir(declaration)) {
+            CacheRecuService.Recu recu = ouvert.recu();
+
+            // Le navigateur revalide à chaque impression : récépissé inchangé, 304 sans corps
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+            if (webRequest.checkNotModified(recu.etag())) {
+                return;
+            }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=declaration-" + id + ".pdf");
+            response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.inline().filename("declaration-" + id + ".pdf").build().toString());
+            response.setContentLengthLong(recu.taille());
 
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(pdfBytes);
+            // Copie du fichier vers la réponse par le canal, sans tableau intermédiaire
+            WritableByteChannel sortie = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < recu.taille()) {
+                position += ouvert.canal().transferTo(position, recu.taille() - position, sortie);
+            }
+        }
     }
 
     // ---------------- Utilitaire ----------------
+    private Map<String, Object> reponsePage(PageDeclarationsDTO page) {
+        Map<String, Object> response = new HashMap<>();
+        // Nombre de lignes de cette page : le total n'est pas compté (une requête par page)
+        response.put("taille", page.getTaille());
+        response.put("declarations", page.getDeclarations());
+        response.put("curseurSuivant", page.getCurseurSuivant());
+        response.put("pageSuivante", page.isPageSuivante());
+        return response;
+    }
+
     private Map<String,String> creerReponseErreur(String message) {
         Map<String,String> erreur = new HashMap<>();
         erreur.put("erreur", message);
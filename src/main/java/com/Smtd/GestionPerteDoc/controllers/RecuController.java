@@ -0,0 +1,42 @@
+package com.Smtd.GestionPerteDoc.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.Smtd.GestionPerteDoc.services.SignatureRecuService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/recus")
+@RequiredArgsConstructor
+public class RecuController {
+
+    private final SignatureRecuService signatureRecuService;
+
+    // ---------------- Vérification du QR code d'un récépissé (public) ----------------
+    // Contrôle de la signature seule, sans accès à la base : le statut actuel de la
+    // déclaration n'est pas vérifié ici
+    @GetMapping("/verifier")
+    public ResponseEntity<Map<String, Object>> verifier(@RequestParam String jeton) {
+        return signatureRecuService.verifier(jeton)
+                .map(recu -> {
+                    Map<String, Object> reponse = new LinkedHashMap<>();
+                    reponse.put("valide", true);
+                    reponse.put("numeroReference", recu.numeroReference());
+                    reponse.put("declarationId", recu.declarationId());
+                    reponse.put("typeDocument", recu.typeDocument());
+                    reponse.put("dateEmission", recu.dateEmission());
+                    return ResponseEntity.ok(reponse);
+                })
+                .orElseGet(() -> {
+                    Map<String, Object> reponse = new LinkedHashMap<>();
+                    reponse.put("valide", false);
+                    reponse.put("erreur", "Récépissé non authentique");
+                    return ResponseEntity.badRequest().body(reponse);
+                });
+    }
+}
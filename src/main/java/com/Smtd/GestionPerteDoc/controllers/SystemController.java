@@ -1,9 +1,11 @@
 package com.Smtd.GestionPerteDoc.controllers;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,6 +17,10 @@ import com.Smtd.GestionPerteDoc.repositories.PostePoliceRepository;
 import com.Smtd.GestionPerteDoc.repositories.RoleRepository;
 import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
 import com.Smtd.GestionPerteDoc.security.SystemStateChecker;
+import com.Smtd.GestionPerteDoc.services.EmailOutboxDispatcher;
+import com.Smtd.GestionPerteDoc.services.EmailOutboxService;
+import com.Smtd.GestionPerteDoc.services.SmsOutboxDispatcher;
+import com.Smtd.GestionPerteDoc.services.SmsOutboxService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -28,6 +34,10 @@ public class SystemController {
     private final UtilisateurRepository utilisateurRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final EmailOutboxService emailOutboxService;
+    private final EmailOutboxDispatcher emailOutboxDispatcher;
+    private final SmsOutboxService smsOutboxService;
+    private final SmsOutboxDispatcher smsOutboxDispatcher;
 
     // Vérifier si le système est initialisé
     @GetMapping("/etat")
@@ -35,6 +45,26 @@ public class SystemController {
         return Map.of("initialised", systemStateChecker.isInitialized());
     }
 
+    // État de la file d'emails (outbox)
+    @GetMapping("/emails")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> etatEmails() {
+        Map<String, Object> etat = new LinkedHashMap<>();
+        etat.put("parStatut", emailOutboxService.compterParStatut());
+        etat.put("depuisDemarrage", emailOutboxDispatcher.compteurs());
+        return etat;
+    }
+
+    // État de la file de SMS
+    @GetMapping("/sms")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> etatSms() {
+        Map<String, Object> etat = new LinkedHashMap<>();
+        etat.put("parStatut", smsOutboxService.compterParStatut());
+        etat.put("depuisDemarrage", smsOutboxDispatcher.compteurs());
+        return etat;
+    }
+
     // Initialisation du système
     @PostMapping("/initialiser")
     public ResponseEntity<?> initialiserSysteme(@RequestBody InitialisationRequest req) {
@@ -81,6 +81,52 @@ public class DTOMapper {
     }
 
 
+    // Projection de liste -> DeclarationDTO (même forme JSON que depuis l'entité)
+    public static DeclarationDTO toDeclarationDTO(DeclarationLigneDTO ligne) {
+        if (ligne == null) return null;
+
+        DeclarantDTO declarantDTO = null;
+        if (ligne.declarantNom() != null) {
+            declarantDTO = new DeclarantDTO(
+                ligne.declarantNom(),
+                ligne.declarantPrenom(),
+                ligne.declarantTelephone(),
+                ligne.declarantNumNina(),
+                ligne.declarantNumPassePort(),
+                ligne.declarantNumCarteIdentite(),
+                ligne.declarantEmail(),
+                ligne.declarantAdresse(),
+                ligne.declarantDateNaissance(),
+                ligne.declarantLieuNaissance()
+            );
+        }
+
+        return new DeclarationDTO(
+            ligne.id(),
+            ligne.numeroReference(),
+            ligne.typeDocumentId(),
+            ligne.typeDocumentLibelle(),
+            ligne.numeroDocument(),
+            ligne.datePerte(),
+            ligne.lieuPerte(),
+            ligne.circonstances(),
+            ligne.dateDeclaration(),
+            ligne.statut(),
+            ligne.utilisateurMatricule(),
+            ligne.utilisateurNom(),
+            ligne.utilisateurPrenom(),
+            declarantDTO,
+            ligne.creeParNom(),
+            ligne.creeLe(),
+            ligne.modifieParNom(),
+            ligne.modifieParPrenom(),
+            ligne.modifieParMatricule(),
+            ligne.modifieLe(),
+            ligne.supprimeParNom(),
+            ligne.supprimeLe()
+        );
+    }
+
     // PostePolice -> PostePoliceDTO
     public static PostePoliceDTO toPostePoliceDTO(PostePolice postePolice) {
         return new PostePoliceDTO(
@@ -0,0 +1,43 @@
+package com.Smtd.GestionPerteDoc.dtos;
+
+import java.util.Date;
+
+import com.Smtd.GestionPerteDoc.enums.StatutDeclaration;
+
+/**
+ * Projection plate d'une déclaration, construite directement par les requêtes JPQL
+ * de liste (SELECT new ...) : aucune entité n'est chargée dans le contexte de persistance.
+ */
+public record DeclarationLigneDTO(
+        Long id,
+        String numeroReference,
+        Long typeDocumentId,
+        String typeDocumentLibelle,
+        String numeroDocument,
+        Date datePerte,
+        String lieuPerte,
+        String circonstances,
+        Date dateDeclaration,
+        StatutDeclaration statut,
+        String utilisateurMatricule,
+        String utilisateurNom,
+        String utilisateurPrenom,
+        String declarantNom,
+        String declarantPrenom,
+        String declarantTelephone,
+        String declarantNumNina,
+        String declarantNumPassePort,
+        String declarantNumCarteIdentite,
+        String declarantEmail,
+        String declarantAdresse,
+        Date declarantDateNaissance,
+        String declarantLieuNaissance,
+        String creeParNom,
+        Date creeLe,
+        String modifieParNom,
+        String modifieParPrenom,
+        String modifieParMatricule,
+        Date modifieLe,
+        String supprimeParNom,
+        Date supprimeLe
+) {}
@@ -0,0 +1,21 @@
+package com.Smtd.GestionPerteDoc.dtos;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Page de déclarations paginée par curseur (creeLe, id).
+ * curseurSuivant est null quand il n'y a plus de page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageDeclarationsDTO {
+    private List<DeclarationDTO> declarations;
+    private int taille;
+    private String curseurSuivant;
+    private boolean pageSuivante;
+}
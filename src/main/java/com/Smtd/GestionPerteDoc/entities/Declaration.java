@@ -8,6 +8,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
 @Data
+// Index : voir db/migration (V2__jetons_reference_outbox.sql, V3__index_requetes.sql, V5__poste_declarations.sql)
 @Table(name = "declarations")
 public class Declaration {
 
@@ -61,6 +62,9 @@ public class Declaration {
     @JoinColumn(name = "utilisateur_id", nullable = true)
     private Utilisateur utilisateur;
 
+    // Poste de l'agent, recopié pour la pagination par poste (suit le changement de poste de l'agent)
+    @Column(name = "poste_id")
+    private Long posteId;
 
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "cree_le", nullable = false)
@@ -0,0 +1,69 @@
+package com.Smtd.GestionPerteDoc.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+import com.Smtd.GestionPerteDoc.enums.StatutEmail;
+import com.Smtd.GestionPerteDoc.enums.TypeEmail;
+
+/**
+ * Email en attente d'envoi (outbox), écrit dans la même transaction que l'opération
+ * métier et expédié ensuite par EmailOutboxDispatcher.
+ */
+@Entity
+@Data
+@Table(name = "emails_sortants")
+public class EmailSortant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 30)
+    private TypeEmail type;
+
+    @Column(name = "destinataire", nullable = false, length = 150)
+    private String destinataire;
+
+    // Paramètres du message selon le type
+    @Column(name = "declaration_id")
+    private Long declarationId;
+
+    @Column(name = "numero_reference", length = 50)
+    private String numeroReference;
+
+    // Jeton et mot de passe temporaire : chiffrés en base, effacés dès que l'email est parti
+    // ou abandonné
+    @Convert(converter = SecretOutboxConverter.class)
+    @Column(name = "jeton")
+    private String jeton;
+
+    @Convert(converter = SecretOutboxConverter.class)
+    @Column(name = "mot_de_passe_temp")
+    private String motDePasseTemp;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false, length = 20)
+    private StatutEmail statut = StatutEmail.EN_ATTENTE;
+
+    @Column(name = "tentatives", nullable = false)
+    private int tentatives = 0;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "prochaine_tentative", nullable = false)
+    private Date prochaineTentative;
+
+    @Column(name = "derniere_erreur", length = 1000)
+    private String derniereErreur;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "cree_le", nullable = false)
+    private Date creeLe;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "envoye_le")
+    private Date envoyeLe;
+}
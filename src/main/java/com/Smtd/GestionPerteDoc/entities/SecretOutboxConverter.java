@@ -0,0 +1,81 @@
+package com.Smtd.GestionPerteDoc.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Chiffrement AES-GCM des secrets en attente d'envoi (jeton de réinitialisation, mot de
+ * passe temporaire) : la table emails_sortants ne les contient jamais en clair.
+ *
+ * Valeur stockée : "v1:" suivi du vecteur d'initialisation et du texte chiffré, en base64.
+ * Une valeur sans ce préfixe a été écrite avant le chiffrement et est relue telle quelle.
+ * Instancié par Hibernate via le conteneur Spring, qui fournit la clé.
+ */
+@Converter
+@Slf4j
+public class SecretOutboxConverter implements AttributeConverter<String, String> {
+
+    private static final String PREFIXE = "v1:";
+    private static final String ALGORITHME = "AES/GCM/NoPadding";
+    private static final int OCTETS_IV = 12;
+    private static final int BITS_TAG = 128;
+
+    private static final SecureRandom ALEA = new SecureRandom();
+
+    private final SecretKeySpec cle;
+
+    public SecretOutboxConverter(@Value("${gestionpertedoc.app.outbox.cleChiffrement}") String secret) {
+        if (secret == null || secret.isBlank()) throw new IllegalStateException("Clé de chiffrement de l'outbox absente");
+        try {
+            // Clé AES-256 dérivée du secret configuré, quelle que soit sa longueur
+            byte[] octets = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            this.cle = new SecretKeySpec(octets, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String valeur) {
+        if (valeur == null) return null;
+        try {
+            byte[] iv = new byte[OCTETS_IV];
+            ALEA.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(ALGORITHME);
+            cipher.init(Cipher.ENCRYPT_MODE, cle, new GCMParameterSpec(BITS_TAG, iv));
+            byte[] chiffre = cipher.doFinal(valeur.getBytes(StandardCharsets.UTF_8));
+            return PREFIXE + Base64.getEncoder().encodeToString(
+                    ByteBuffer.allocate(iv.length + chiffre.length).put(iv).put(chiffre).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Chiffrement impossible d'un secret de l'outbox", e);
+        }
+    }
+
+    @Override
+    public String convertToEntityAttribute(String colonne) {
+        if (colonne == null || !colonne.startsWith(PREFIXE)) return colonne;
+        try {
+            byte[] octets = Base64.getDecoder().decode(colonne.substring(PREFIXE.length()));
+            Cipher cipher = Cipher.getInstance(ALGORITHME);
+            cipher.init(Cipher.DECRYPT_MODE, cle, new GCMParameterSpec(BITS_TAG, octets, 0, OCTETS_IV));
+            return new String(cipher.doFinal(octets, OCTETS_IV, octets.length - OCTETS_IV), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            // Clé changée ou valeur altérée : lu comme absent, l'email échoue jusqu'à être abandonné
+            log.warn("Secret de l'outbox illisible (clé de chiffrement changée ?) : {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.Smtd.GestionPerteDoc.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+import com.Smtd.GestionPerteDoc.enums.StatutEmail;
+import com.Smtd.GestionPerteDoc.enums.TypeSms;
+
+/**
+ * SMS en attente d'envoi (outbox), écrit dans la même transaction que l'opération
+ * métier et expédié ensuite par SmsOutboxDispatcher. Mêmes statuts que les emails.
+ */
+@Entity
+@Data
+@Table(name = "sms_sortants")
+public class SmsSortant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 30)
+    private TypeSms type;
+
+    // Numéro au format international (+223...)
+    @Column(name = "destinataire", nullable = false, length = 20)
+    private String destinataire;
+
+    @Column(name = "numero_reference", nullable = false, length = 50)
+    private String numeroReference;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false, length = 20)
+    private StatutEmail statut = StatutEmail.EN_ATTENTE;
+
+    @Column(name = "tentatives", nullable = false)
+    private int tentatives = 0;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "prochaine_tentative", nullable = false)
+    private Date prochaineTentative;
+
+    // Identifiant du message chez le fournisseur (SID Twilio)
+    @Column(name = "identifiant_fournisseur", length = 64)
+    private String identifiantFournisseur;
+
+    @Column(name = "derniere_erreur", length = 1000)
+    private String derniereErreur;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "cree_le", nullable = false)
+    private Date creeLe;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "envoye_le")
+    private Date envoyeLe;
+}
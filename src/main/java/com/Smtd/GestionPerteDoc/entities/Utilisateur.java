@@ -51,6 +51,10 @@ public class Utilisateur {
     @Column(name = "reset_password_expires")
     private LocalDateTime resetPasswordExpires;
 
+    // Les jetons émis avant cette date sont refusés (rôles, poste ou mot de passe modifiés)
+    @Column(name = "jetons_revoques_le")
+    private LocalDateTime jetonsRevoquesLe;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "poste_id", nullable = false)
     private PostePolice postePolice;
@@ -0,0 +1,7 @@
+package com.Smtd.GestionPerteDoc.enums;
+
+public enum StatutEmail {
+	EN_ATTENTE,
+	ENVOYE,
+	ECHEC
+}
@@ -0,0 +1,19 @@
+package com.Smtd.GestionPerteDoc.enums;
+
+public enum TypeEmail {
+	RECU_DECLARATION(true),
+	DECLARATION_VALIDEE(true),
+	MOT_DE_PASSE_TEMPORAIRE(false),
+	MOT_DE_PASSE_OUBLIE(false);
+
+	// Notification adressée au déclarant : regroupable avec ses autres notifications en attente
+	private final boolean notificationDeclarant;
+
+	TypeEmail(boolean notificationDeclarant) {
+		this.notificationDeclarant = notificationDeclarant;
+	}
+
+	public boolean isNotificationDeclarant() {
+		return notificationDeclarant;
+	}
+}
@@ -0,0 +1,6 @@
+package com.Smtd.GestionPerteDoc.enums;
+
+public enum TypeSms {
+	RECU_DECLARATION,
+	DECLARATION_VALIDEE
+}
@@ -1,9 +1,14 @@
 package com.Smtd.GestionPerteDoc.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.Smtd.GestionPerteDoc.entities.Declarant;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +18,42 @@ public interface DeclarantRepository extends JpaRepository<Declarant, UUID> {
     Optional<Declarant> findByNumCarteIdentite(String numCarteIdentite);
 	Optional<Declarant> findByEmail(String email);
 	Optional<Declarant> findByTelephone(String telephone);
+
+    // === RÉSOLUTION EN UNE SEULE REQUÊTE (tous identifiants confondus) ===
+    @Query("""
+        SELECT d FROM Declarant d
+        WHERE d.numNina = :numNina
+           OR d.numCarteIdentite = :numCarteIdentite
+           OR d.numPassePort = :numPassePort
+           OR d.email = :email
+           OR d.telephone = :telephone
+    """)
+    List<Declarant> findCorrespondances(@Param("numNina") String numNina,
+                                        @Param("numCarteIdentite") String numCarteIdentite,
+                                        @Param("numPassePort") String numPassePort,
+                                        @Param("email") String email,
+                                        @Param("telephone") String telephone);
+
+    // === INSERTION ATOMIQUE : 0 si une contrainte d'unicité est déjà prise ===
+    // ON CONFLICT DO NOTHING n'interrompt pas la transaction courante, contrairement
+    // à une violation de contrainte levée par save().
+    @Modifying
+    @Query(value = """
+        INSERT INTO declarants (id, num_nina, num_carte_identite, num_passeport, nom, prenom,
+                                date_naissance, lieu_naissance, email, telephone, adresse)
+        VALUES (:id, :numNina, :numCarteIdentite, :numPassePort, :nom, :prenom,
+                CAST(:dateNaissance AS date), :lieuNaissance, :email, :telephone, :adresse)
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int insererSiAbsent(@Param("id") UUID id,
+                        @Param("numNina") String numNina,
+                        @Param("numCarteIdentite") String numCarteIdentite,
+                        @Param("numPassePort") String numPassePort,
+                        @Param("nom") String nom,
+                        @Param("prenom") String prenom,
+                        @Param("dateNaissance") Date dateNaissance,
+                        @Param("lieuNaissance") String lieuNaissance,
+                        @Param("email") String email,
+                        @Param("telephone") String telephone,
+                        @Param("adresse") String adresse);
 }
@@ -1,19 +1,46 @@
 package com.Smtd.GestionPerteDoc.repositories;
 
+import com.Smtd.GestionPerteDoc.dtos.DeclarationLigneDTO;
 import com.Smtd.GestionPerteDoc.entities.Declaration;
 import com.Smtd.GestionPerteDoc.enums.StatutDeclaration;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface DeclarationRepository extends JpaRepository<Declaration, Long> {
 
+    // Projection plate partagée par les requêtes de liste et d'export
+    String LIGNE_SELECT = """
+        SELECT new com.Smtd.GestionPerteDoc.dtos.DeclarationLigneDTO(
+            d.id, d.numeroReference, t.id, t.libelleTypeDocument, d.numeroDocument,
+            d.datePerte, d.lieuPerte, d.circonstances, d.dateDeclaration, d.statut,
+            u.matricule, u.nom, u.prenom,
+            dec.nom, dec.prenom, dec.telephone, dec.numNina, dec.numPassePort, dec.numCarteIdentite,
+            dec.email, dec.adresse, dec.dateNaissance, dec.lieuNaissance,
+            cp.nom, d.creeLe,
+            mp.nom, mp.prenom, mp.matricule, d.modifieLe,
+            sp.nom, d.supprimeLe)
+        FROM Declaration d
+        LEFT JOIN d.declarant dec
+        LEFT JOIN d.typeDocument t
+        LEFT JOIN d.utilisateur u
+        LEFT JOIN d.creePar cp
+        LEFT JOIN d.modifiePar mp
+        LEFT JOIN d.supprimePar sp
+        """;
+
     // === RECHERCHE PAR RÉFÉRENCE ===
     @Query("""
         SELECT d FROM Declaration d
@@ -40,67 +67,70 @@ public interface DeclarationRepository extends JpaRepository<Declaration, Long>
     """)
     Optional<Declaration> findByIdWithDetails(@Param("id") Long id);
 
-    // === LISTAGE AVEC TOUS LES DÉTAILS ===
-    @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        LEFT JOIN FETCH d.utilisateur
-        LEFT JOIN FETCH d.creePar
-        LEFT JOIN FETCH d.modifiePar
-        LEFT JOIN FETCH d.supprimePar
-        WHERE d.supprime = false
+    // === PAGINATION PAR CURSEUR (creeLe DESC, id DESC) - AGENT ===
+    // Projection directe en DTO : pas d'entité hydratée, pas de rôles EAGER chargés
+    @Query(LIGNE_SELECT + """
+        WHERE d.utilisateur.id = :utilisateurId AND d.supprime = :supprime
+          AND (:statut IS NULL OR d.statut = :statut)
+          AND (:typeDocumentId IS NULL OR d.typeDocument.id = :typeDocumentId)
+          AND d.creeLe <= :creeLe
+          AND (d.creeLe < :creeLe OR d.id < :id)
+        ORDER BY d.creeLe DESC, d.id DESC
     """)
-    List<Declaration> findAllWithDetails();
-
-    // === DÉCLARATIONS ACTIVES - AGENT (ses propres déclarations) ===
-    @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        LEFT JOIN FETCH d.utilisateur
-        LEFT JOIN FETCH d.creePar
-        LEFT JOIN FETCH d.modifiePar
-        WHERE d.utilisateur.id = :utilisateurId AND d.supprime = false
+    List<DeclarationLigneDTO> findPageByUtilisateurId(@Param("utilisateurId") Long utilisateurId,
+                                                      @Param("supprime") boolean supprime,
+                                                      @Param("statut") StatutDeclaration statut,
+                                                      @Param("typeDocumentId") Long typeDocumentId,
+                                                      @Param("creeLe") Date creeLe,
+                                                      @Param("id") Long id,
+                                                      Pageable pageable);
+
+    // === PAGINATION PAR CURSEUR (creeLe DESC, id DESC) - ADMIN/SUPERVISEUR ===
+    // Filtre sur la colonne recopiée d.posteId : idx_declarations_poste_keyset sert le filtre et le tri
+    @Query(LIGNE_SELECT + """
+        WHERE d.posteId = :postePoliceId AND d.supprime = :supprime
+          AND (:statut IS NULL OR d.statut = :statut)
+          AND (:typeDocumentId IS NULL OR d.typeDocument.id = :typeDocumentId)
+          AND d.creeLe <= :creeLe
+          AND (d.creeLe < :creeLe OR d.id < :id)
+        ORDER BY d.creeLe DESC, d.id DESC
     """)
-    List<Declaration> findByUtilisateurIdAndSupprimeFalseWithDetails(@Param("utilisateurId") Long utilisateurId);
-
-    // === DÉCLARATIONS ACTIVES - ADMIN/SUPERVISEUR (toutes les déclarations de son poste) ===
-    @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        LEFT JOIN FETCH d.utilisateur
-        LEFT JOIN FETCH d.creePar
-        LEFT JOIN FETCH d.modifiePar
-        LEFT JOIN FETCH d.supprimePar
-        WHERE d.utilisateur.postePolice.id = :postePoliceId AND d.supprime = false
-    """)
-    List<Declaration> findByUtilisateurPostePoliceIdAndSupprimeFalseWithDetails(@Param("postePoliceId") Long postePoliceId);
-
-    // === DÉCLARATIONS SUPPRIMÉES - AGENT ===
-    @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        LEFT JOIN FETCH d.utilisateur
-        LEFT JOIN FETCH d.creePar
-        LEFT JOIN FETCH d.supprimePar
-        WHERE d.utilisateur.id = :utilisateurId AND d.supprime = true
+    List<DeclarationLigneDTO> findPageByPostePoliceId(@Param("postePoliceId") Long postePoliceId,
+                                                      @Param("supprime") boolean supprime,
+                                                      @Param("statut") StatutDeclaration statut,
+                                                      @Param("typeDocumentId") Long typeDocumentId,
+                                                      @Param("creeLe") Date creeLe,
+                                                      @Param("id") Long id,
+                                                      Pageable pageable);
+
+    // === EXPORT EN FLUX (curseur serveur, lecture seule) ===
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(LIGNE_SELECT + """
+        WHERE d.supprime = false
+        ORDER BY d.id
     """)
-    List<Declaration> findByUtilisateurIdAndSupprimeTrueWithDetails(@Param("utilisateurId") Long utilisateurId);
-
-    // === DÉCLARATIONS SUPPRIMÉES - ADMIN/SUPERVISEUR ===
+    Stream<DeclarationLigneDTO> streamLignesActives();
+
+    // === RÉCÉPISSÉS D'UN POSTE SUR UNE PÉRIODE (export ZIP) ===
+    // Entités complètes (déclarant, type) : c'est ce que le gabarit du récépissé lit
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
     @Query("""
         SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        LEFT JOIN FETCH d.utilisateur
-        LEFT JOIN FETCH d.creePar
-        LEFT JOIN FETCH d.supprimePar
-        WHERE d.utilisateur.postePolice.id = :postePoliceId AND d.supprime = true
+        JOIN FETCH d.declarant
+        JOIN FETCH d.typeDocument
+        WHERE d.posteId = :postePoliceId AND d.supprime = false
+          AND d.creeLe >= :debut AND d.creeLe < :fin
+        ORDER BY d.creeLe, d.id
     """)
-    List<Declaration> findByUtilisateurPostePoliceIdAndSupprimeTrueWithDetails(@Param("postePoliceId") Long postePoliceId);
+    Stream<Declaration> streamPourRecus(@Param("postePoliceId") Long postePoliceId,
+                                        @Param("debut") Date debut,
+                                        @Param("fin") Date fin);
 
 //    // === MÉTHODES EXISTANTES POUR COMPATIBILITÉ ===
 //    @Query("""
@@ -119,58 +149,37 @@ public interface DeclarationRepository extends JpaRepository<Declaration, Long>
 //    """)
 //    List<Declaration> findByCreeParPostePoliceIdAndSupprimeFalse(@Param("postePoliceId") Long postePoliceId);
 
+    // === STATISTIQUES ===
+    // Une ligne [statut, supprime, nombre] par groupe : toutes les stats en un seul aller-retour.
+    // COUNT(*) et non COUNT(d) (rendu count(d.id)) : parcours d'index seul possible
     @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        WHERE d.creePar.id = :utilisateurId AND d.supprime = true
+        SELECT d.statut, d.supprime, COUNT(*)
+        FROM Declaration d
+        GROUP BY d.statut, d.supprime
     """)
-    List<Declaration> findByUtilisateurIdAndSupprimeTrue(@Param("utilisateurId") Long utilisateurId);
+    List<Object[]> compterParStatut();
 
     @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        WHERE d.creePar.postePolice.id = :postePoliceId AND d.supprime = true
+        SELECT d.statut, d.supprime, COUNT(*)
+        FROM Declaration d
+        WHERE d.posteId = :postePoliceId
+        GROUP BY d.statut, d.supprime
     """)
-    List<Declaration> findByUtilisateur_PostePolice_IdAndSupprimeTrue(@Param("postePoliceId") Long postePoliceId);
-
-    // === STATISTIQUES ===
-    long countBySupprimeFalse();
-    long countBySupprimeTrue();
-    
-    long countByStatutAndSupprimeFalse(StatutDeclaration statut);
-    long countByStatutAndSupprimeTrue(StatutDeclaration statut);
+    List<Object[]> compterParStatutPourPoste(@Param("postePoliceId") Long postePoliceId);
 
-    // === VÉRIFICATION EXISTENCE ===
-    boolean existsByNumeroReference(String numeroReference);
-
-    // === RECHERCHE PAR DÉCLARANT ===
     @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        WHERE d.declarant.id = :declarantId AND d.supprime = false
+        SELECT d.statut, d.supprime, COUNT(*)
+        FROM Declaration d
+        WHERE d.utilisateur.id = :utilisateurId
+        GROUP BY d.statut, d.supprime
     """)
-    List<Declaration> findByDeclarantId(@Param("declarantId") String declarantId);
+    List<Object[]> compterParStatutPourUtilisateur(@Param("utilisateurId") Long utilisateurId);
 
-    // === RECHERCHE PAR TYPE DE DOCUMENT ===
-    @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        WHERE d.typeDocument.id = :typeDocumentId AND d.supprime = false
-    """)
-    List<Declaration> findByTypeDocumentId(@Param("typeDocumentId") Long typeDocumentId);
+    @Query("SELECT COUNT(*) FROM Declaration d WHERE d.statut = :statut AND d.supprime = true")
+    long countByStatutAndSupprimeTrue(@Param("statut") StatutDeclaration statut);
 
-    // === RECHERCHE PAR STATUT ===
-    @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.declarant
-        LEFT JOIN FETCH d.typeDocument
-        WHERE d.statut = :statut AND d.supprime = false
-    """)
-    List<Declaration> findByStatut(@Param("statut") StatutDeclaration statut);
+    // === VÉRIFICATION EXISTENCE ===
+    boolean existsByNumeroReference(String numeroReference);
 
     // === HISTORIQUE MODIFICATIONS ===
 //    @Query("""
@@ -194,9 +203,6 @@ public interface DeclarationRepository extends JpaRepository<Declaration, Long>
 //    """)
 //    List<Declaration> findTop10ByOrderByCreeLeDesc();
 
-    // === POUR GÉNÉRATION DE RÉFÉRENCE ===
-    Declaration findTopByOrderByNumeroReferenceDesc();
-
     // === MÉTHODE POUR VÉRIFIER LA PERSISTANCE ===
     @Query("SELECT COUNT(d) FROM Declaration d")
     long countAllDeclarations();
@@ -211,26 +217,14 @@ public interface DeclarationRepository extends JpaRepository<Declaration, Long>
 //    List<Object[]> countByStatutGrouped();
 
     // === AUTRES MÉTHODES AJOUTÉES ===
-    @Query("""
-        SELECT d FROM Declaration d
-        LEFT JOIN FETCH d.utilisateur
-        LEFT JOIN FETCH d.typeDocument
-        LEFT JOIN FETCH d.declarant
-        WHERE d.utilisateur.id = :utilisateurId
-    """)
-    List<Declaration> findByUtilisateurIdWithDetails(@Param("utilisateurId") Long utilisateurId);
-
-    List<Declaration> findBySupprimeTrue();
-
-    long countByUtilisateurIdAndSupprimeFalse(Long utilisateurId);
-
-    long countByUtilisateurIdAndStatutAndSupprimeFalse(Long utilisateurId, StatutDeclaration validee);
-
-    long countByUtilisateurIdAndSupprimeTrue(Long utilisateurId);
     @Query("SELECT d FROM Declaration d LEFT JOIN FETCH d.modifiePar WHERE d.id = :id")
     Optional<Declaration> findByIdWithModifiePar(@Param("id") Long id);
 
-	List<Declaration> findByUtilisateurId(Long utilisateurId);
+	// Garde poste_id aligné sur le poste de l'agent quand celui-ci change de poste
+	@Modifying
+	@Query("UPDATE Declaration d SET d.posteId = :postePoliceId WHERE d.utilisateur.id = :utilisateurId")
+	int reaffecterPoste(@Param("utilisateurId") Long utilisateurId, @Param("postePoliceId") Long postePoliceId);
+
 	@Modifying
 	@Query("DELETE FROM Declaration d WHERE d.utilisateur.id = :utilisateurId")
 	void deleteByUtilisateurId(@Param("utilisateurId") Long utilisateurId);
@@ -0,0 +1,50 @@
+package com.Smtd.GestionPerteDoc.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.Smtd.GestionPerteDoc.entities.EmailSortant;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface EmailSortantRepository extends JpaRepository<EmailSortant, Long> {
+
+    // === RÉSERVATION D'UN LOT (plusieurs noeuds : SKIP LOCKED) ===
+    @Query(value = """
+        SELECT id FROM emails_sortants
+        WHERE statut = 'EN_ATTENTE' AND prochaine_tentative <= :maintenant
+        ORDER BY prochaine_tentative
+        LIMIT :taille
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> verrouillerLot(@Param("maintenant") Date maintenant, @Param("taille") int taille);
+
+    // Bail : les emails réservés ne sont plus visibles des autres noeuds jusqu'à son expiration
+    @Modifying
+    @Query("UPDATE EmailSortant e SET e.prochaineTentative = :finBail WHERE e.id IN :ids")
+    int prolongerBail(@Param("ids") List<Long> ids, @Param("finBail") Date finBail);
+
+    // === REGROUPEMENT : notifications en attente d'un même déclarant ===
+    // Celles du lot en cours, et celles dont la fenêtre de regroupement court encore. Un email
+    // réservé par un autre noeud (bail plus long que la fenêtre) n'est pas repris.
+    @Query(value = """
+        SELECT id FROM emails_sortants
+        WHERE statut = 'EN_ATTENTE' AND destinataire = :destinataire AND type IN (:types)
+          AND (id IN (:lot) OR prochaine_tentative <= :limite)
+        ORDER BY cree_le, id
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> verrouillerNotificationsDeclarant(@Param("destinataire") String destinataire,
+                                                 @Param("types") List<String> types,
+                                                 @Param("lot") List<Long> lot,
+                                                 @Param("limite") Date limite);
+
+    // === MÉTRIQUES ===
+    @Query("SELECT e.statut, COUNT(e) FROM EmailSortant e GROUP BY e.statut")
+    List<Object[]> compterParStatut();
+}
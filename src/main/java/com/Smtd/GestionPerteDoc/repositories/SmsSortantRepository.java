@@ -0,0 +1,35 @@
+package com.Smtd.GestionPerteDoc.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.Smtd.GestionPerteDoc.entities.SmsSortant;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface SmsSortantRepository extends JpaRepository<SmsSortant, Long> {
+
+    // === RÉSERVATION D'UN LOT (plusieurs noeuds : SKIP LOCKED) ===
+    @Query(value = """
+        SELECT id FROM sms_sortants
+        WHERE statut = 'EN_ATTENTE' AND prochaine_tentative <= :maintenant
+        ORDER BY prochaine_tentative
+        LIMIT :taille
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> verrouillerLot(@Param("maintenant") Date maintenant, @Param("taille") int taille);
+
+    // Bail : les SMS réservés ne sont plus visibles des autres noeuds jusqu'à son expiration
+    @Modifying
+    @Query("UPDATE SmsSortant s SET s.prochaineTentative = :finBail WHERE s.id IN :ids")
+    int prolongerBail(@Param("ids") List<Long> ids, @Param("finBail") Date finBail);
+
+    // === MÉTRIQUES ===
+    @Query("SELECT s.statut, COUNT(s) FROM SmsSortant s GROUP BY s.statut")
+    List<Object[]> compterParStatut();
+}
@@ -1,6 +1,7 @@
 package com.Smtd.GestionPerteDoc.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,6 +18,15 @@ public interface UtilisateurRepository extends JpaRepository<Utilisateur, Long>
     boolean existsByEmail(String email);
     boolean existsByMatricule(String matricule);
     Optional<Utilisateur> findByEmail(String email);
+
+    // État minimal du compte pour la vérification des jetons (sans charger les rôles)
+    @Query("SELECT u.actif, u.isDeleted, u.jetonsRevoquesLe FROM Utilisateur u WHERE u.id = :id")
+    List<Object[]> findEtatCompte(@Param("id") Long id);
+
+    // Nouveau hash du même mot de passe (changement de coût BCrypt), sans recharger l'entité
+    @Modifying
+    @Query("UPDATE Utilisateur u SET u.motDePasseHash = :hash WHERE u.id = :id")
+    int changerMotDePasseHash(@Param("id") Long id, @Param("hash") String hash);
     List<Utilisateur> findByActifTrue();
     List<Utilisateur> findByActifFalse();
     long countByMatriculeStartingWith(String prefix);
@@ -13,8 +13,8 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -33,6 +33,9 @@ import lombok.RequiredArgsConstructor;
 public class SecurityConf {
 
     private final UserDetailsService userDetailsService;
+    private final UserDetailsPasswordService userDetailsPasswordService;
+    // HachageMotDePasseService : BCrypt sur un pool borné, coût calibré
+    private final PasswordEncoder passwordEncoder;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
 
     @Bean
@@ -44,9 +47,14 @@ public class SecurityConf {
                 // Routes publiques
                 .requestMatchers(HttpMethod.PATCH, "/api/declarations/*/restaurer").hasAnyRole("ADMIN", "SUPERVISEUR", "AGENT")
                 .requestMatchers("/api/auth/**").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/recus/verifier").permitAll()
                 .requestMatchers("/api/roles/**").permitAll()
                 .requestMatchers("/api/postes-police/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
+                // Sondes et collecte Prometheus, servies seulement sur management.server.port
+                // (port interne, jamais celui de l'API) ; le reste d'Actuator est réservé à l'admin
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .requestMatchers("/api/declarations/actives/poste").hasAnyRole("ADMIN","SUPERVISEUR")
                 .requestMatchers("/api/declarations/rechercher-declarant").hasAnyRole("ADMIN","SUPERVISEUR", "AGENT")
                 .requestMatchers("/api/declarations/**").authenticated()
@@ -92,7 +100,9 @@ public class SecurityConf {
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Hash recalculé à la connexion quand le coût BCrypt a changé
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return authProvider;
     }
 
@@ -101,11 +111,6 @@ public class SecurityConf {
         return config.getAuthenticationManager();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
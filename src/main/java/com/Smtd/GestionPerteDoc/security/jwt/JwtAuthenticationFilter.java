@@ -1,10 +1,15 @@
 package com.Smtd.GestionPerteDoc.security.jwt;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,27 +18,27 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.Smtd.GestionPerteDoc.security.jwt.JwtUtil;
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
+import com.Smtd.GestionPerteDoc.security.services.CustomUserDetails;
 import com.Smtd.GestionPerteDoc.security.services.CustomUserDetailsService;
+import com.Smtd.GestionPerteDoc.security.services.RevocationJetonService;
 
 import java.io.IOException;
 
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final RevocationJetonService revocationJetonService;
+    private final MeterRegistry meterRegistry;
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
-        String path = request.getServletPath();
         //  NE PAS filtrer les routes d'authentification
-        boolean isAuthRoute = path.startsWith("/api/auth/");
-        if (isAuthRoute) {
-            System.out.println(" JWT Filter skipped for auth route: " + path);
-        }
-        return isAuthRoute;
+        return request.getServletPath().startsWith("/api/auth/");
     }
 
     @Override
@@ -41,71 +46,71 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
-        System.out.println("=== JWT FILTER EXECUTED ===");
-        System.out.println("URL: " + request.getRequestURI());
-        
         final String authHeader = request.getHeader("Authorization");
-        System.out.println("Authorization Header: " + authHeader);
 
-        // ✅ VÉRIFICATION AMÉLIORÉE : Valider le format du header
+        // Valider le format du header
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            System.out.println("No Bearer token found, skipping JWT filter");
             filterChain.doFilter(request, response);
             return;
         }
 
         final String jwt = authHeader.substring(7);
-        System.out.println("JWT Token length: " + jwt.length());
-        
+
         //  VÉRIFICATION : Token non vide
         if (jwt.isEmpty() || "undefined".equals(jwt) || "null".equals(jwt)) {
-            System.out.println("Invalid JWT token: empty or undefined");
             filterChain.doFilter(request, response);
             return;
         }
 
+        Timer.Sample chrono = Timer.start(meterRegistry);
+        String resultat = "ignore";
         try {
-            final String username = jwtUtil.extractUsername(jwt);
-            System.out.println("Extracted username: " + username);
-
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                System.out.println("Loading user details for: " + username);
-                
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                System.out.println("UserDetails loaded: " + (userDetails != null ? userDetails.getUsername() : "NULL"));
-
-                //  VALIDATION : Vérifier que le token est valide
-                if (userDetails != null && jwtUtil.validateToken(jwt, userDetails)) {
-                    System.out.println(" Token validated, creating authentication token");
-                    
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Signature et expiration vérifiées en une seule lecture
+                Claims claims = jwtUtil.lireClaims(jwt);
+                UserDetails userDetails = construirePrincipal(claims);
+
+                if (userDetails != null) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails, // Principal
                             null, // Credentials
                             userDetails.getAuthorities() // Authorities
                     );
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
                     SecurityContextHolder.getContext().setAuthentication(authToken);
-                    System.out.println(" Authentication set in SecurityContext");
-                    
-                    // Vérification
-                    var auth = SecurityContextHolder.getContext().getAuthentication();
-                    System.out.println("SecurityContext Principal: " + (auth != null ? auth.getPrincipal().getClass().getName() : "NULL"));
+                    resultat = "authentifie";
                 } else {
-                    System.out.println(" Token validation failed");
-                    // Ne pas bloquer la requête, laisser passer pour d'autres traitements
+                    log.debug("Jeton révoqué ou compte désactivé pour {}", claims.getSubject());
+                    resultat = "revoque";
                 }
             }
+        } catch (JwtException e) {
+            log.debug("Jeton JWT refusé : {}", e.getMessage());
+            resultat = "invalide";
         } catch (UsernameNotFoundException e) {
-            System.out.println(" User not found: " + e.getMessage());
-            // Ne pas envoyer de réponse d'erreur ici, laisser passer la requête
-            // Le contrôleur gérera l'authentification
+            log.debug("Utilisateur du jeton introuvable : {}", e.getMessage());
+            resultat = "invalide";
         } catch (Exception e) {
-            System.out.println(" JWT Filter error: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("Erreur du filtre JWT : {}", e.getMessage(), e);
+            resultat = "erreur";
             // Ne pas bloquer la requête en cas d'erreur JWT
+        } finally {
+            chrono.stop(meterRegistry.timer("gestionpertedoc.jwt.filtre", MetriquesConfig.TAG_RESULTAT, resultat));
         }
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private UserDetails construirePrincipal(Claims claims) {
+        if (claims.get(JwtUtil.CLAIM_ID) == null) {
+            // Jeton émis avant l'ajout des claims : chargement depuis la base
+            return userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+
+        CustomUserDetails userDetails = CustomUserDetails.depuisJeton(claims);
+        if (!revocationJetonService.estValide(userDetails.getUtilisateur().getId(), JwtUtil.emisLe(claims))) {
+            return null;
+        }
+        return userDetails;
+    }
+}
@@ -2,55 +2,148 @@ package com.Smtd.GestionPerteDoc.security.jwt;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.Smtd.GestionPerteDoc.entities.Role;
+import com.Smtd.GestionPerteDoc.entities.Utilisateur;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 public class JwtUtil {
-    private final String SECRET = "MaCleSecreteUltraLonguePourJWT123456789!"; 
+    private final String SECRET = "MaCleSecreteUltraLonguePourJWT123456789!";
     private final long EXPIRATION = 1000 * 60 * 60; // 1h
 
+    // Claims portés par le jeton : le filtre reconstruit l'utilisateur sans requête
+    public static final String CLAIM_ID = "uid";
+    public static final String CLAIM_POSTE = "poste";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_NOM = "nom";
+    public static final String CLAIM_PRENOM = "prenom";
+    public static final String CLAIM_MATRICULE = "matricule";
+    // Instant d'émission à la milliseconde (iat n'est qu'à la seconde), pour la révocation
+    public static final String CLAIM_EMIS_MS = "emisMs";
+
     private final Key key = Keys.hmacShaKeyFor(SECRET.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(key).build();
+
+    // Jetons déjà vérifiés, par empreinte SHA-256 (le jeton lui-même n'est pas conservé).
+    // Une même session présente le même jeton à chaque requête : ni HMAC ni lecture JSON
+    // après la première. Lecture sans verrou : chaque accès note seulement son instant.
+    // Au-delà de tailleCache, un seul thread évince les jetons expirés puis les moins
+    // récemment utilisés (LRU approché), jusqu'à 90 % de la taille pour ne pas recommencer
+    // à chaque insertion.
+    private static final class JetonVerifie {
+        final Claims claims;
+        final long expireLe;
+        volatile long dernierAcces;
+
+        JetonVerifie(Claims claims, long expireLe, long dernierAcces) {
+            this.claims = claims;
+            this.expireLe = expireLe;
+            this.dernierAcces = dernierAcces;
+        }
+    }
+
+    private final int tailleCache;
+    private final ConcurrentHashMap<ByteBuffer, JetonVerifie> verifies = new ConcurrentHashMap<>();
+    private final AtomicBoolean evictionEnCours = new AtomicBoolean();
+
+    public JwtUtil(@Value("${gestionpertedoc.app.jwtCacheTaille:10000}") int tailleCache) {
+        this.tailleCache = tailleCache;
+    }
+
+    public String generateToken(Utilisateur utilisateur) {
+        List<String> roles = utilisateur.getRoles().stream().map(Role::getLibelle).toList();
+        Date maintenant = new Date();
 
-    public String generateToken(String username) {
         return Jwts.builder()
-                .setSubject(username)
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION))
+                .setSubject(utilisateur.getEmail())
+                .claim(CLAIM_ID, utilisateur.getId())
+                .claim(CLAIM_POSTE, utilisateur.getPostePolice() != null ? utilisateur.getPostePolice().getId() : null)
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_NOM, utilisateur.getNom())
+                .claim(CLAIM_PRENOM, utilisateur.getPrenom())
+                .claim(CLAIM_MATRICULE, utilisateur.getMatricule())
+                .claim(CLAIM_EMIS_MS, maintenant.getTime())
+                .setIssuedAt(maintenant)
+                .setExpiration(new Date(maintenant.getTime() + EXPIRATION))
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    /**
+     * Vérifie la signature et l'expiration puis renvoie les claims, en une seule lecture du jeton.
+     * Un jeton déjà vérifié et pas encore expiré est servi depuis le cache.
+     * Lève une JwtException si le jeton est invalide ou expiré.
+     */
+    public Claims lireClaims(String token) {
+        if (tailleCache <= 0) return parser.parseClaimsJws(token).getBody();
+
+        ByteBuffer empreinte = empreinte(token);
+        long maintenant = System.currentTimeMillis();
+        JetonVerifie verifie = verifies.get(empreinte);
+        if (verifie != null) {
+            if (maintenant < verifie.expireLe) {
+                verifie.dernierAcces = maintenant;
+                return verifie.claims;
+            }
+            // Expiré : la lecture ci-dessous lève l'exception habituelle
+            verifies.remove(empreinte, verifie);
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        // Jeton sans expiration : jamais mis en cache
+        if (claims.getExpiration() != null) {
+            verifies.put(empreinte, new JetonVerifie(claims, claims.getExpiration().getTime(), maintenant));
+            if (verifies.size() > tailleCache) evincer(maintenant);
+        }
+        return claims;
     }
 
-    public boolean validateToken(String token, UserDetails userDetails) {
+    // Un appelant à la fois ; les autres continuent sans attendre, le cache dépassant
+    // brièvement sa taille
+    private void evincer(long maintenant) {
+        if (!evictionEnCours.compareAndSet(false, true)) return;
         try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        } catch (JwtException e) {
-            return false;
+            verifies.values().removeIf(v -> v.expireLe <= maintenant);
+            int cible = tailleCache * 9 / 10;
+            int excedent = verifies.size() - cible;
+            if (excedent <= 0) return;
+
+            long[] acces = verifies.values().stream().mapToLong(v -> v.dernierAcces).sorted().toArray();
+            if (acces.length == 0) return;
+            long seuil = acces[Math.min(excedent, acces.length) - 1];
+            verifies.values().removeIf(v -> v.dernierAcces <= seuil);
+        } finally {
+            evictionEnCours.set(false);
         }
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * Instant d'émission du jeton, à la milliseconde. Un jeton émis avant l'ajout de
+     * CLAIM_EMIS_MS retombe sur iat, tronqué à la seconde : il est alors considéré comme
+     * émis plus tôt, donc refusé plutôt qu'accepté à tort après une révocation.
+     */
+    public static Date emisLe(Claims claims) {
+        Number emisMs = claims.get(CLAIM_EMIS_MS, Number.class);
+        return emisMs != null ? new Date(emisMs.longValue()) : claims.getIssuedAt();
     }
 
-    private Date extractExpiration(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getExpiration();
+    private static ByteBuffer empreinte(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,9 +4,17 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import com.Smtd.GestionPerteDoc.entities.PostePolice;
+import com.Smtd.GestionPerteDoc.entities.Role;
 import com.Smtd.GestionPerteDoc.entities.Utilisateur;
+import com.Smtd.GestionPerteDoc.security.jwt.JwtUtil;
+
+import io.jsonwebtoken.Claims;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class CustomUserDetails implements UserDetails {
@@ -18,6 +26,41 @@ public class CustomUserDetails implements UserDetails {
         this.utilisateur = utilisateur;
     }
 
+    /**
+     * Principal reconstruit à partir des claims du jeton, sans accès à la base.
+     * L'utilisateur obtenu n'est pas géré par JPA : il sert de référence (id) pour les
+     * associations et porte les informations d'affichage, il ne doit pas être sauvegardé.
+     */
+    public static CustomUserDetails depuisJeton(Claims claims) {
+        Utilisateur utilisateur = new Utilisateur();
+        utilisateur.setId(((Number) claims.get(JwtUtil.CLAIM_ID)).longValue());
+        utilisateur.setEmail(claims.getSubject());
+        utilisateur.setNom(claims.get(JwtUtil.CLAIM_NOM, String.class));
+        utilisateur.setPrenom(claims.get(JwtUtil.CLAIM_PRENOM, String.class));
+        utilisateur.setMatricule(claims.get(JwtUtil.CLAIM_MATRICULE, String.class));
+        utilisateur.setActif(true);
+
+        Number posteId = claims.get(JwtUtil.CLAIM_POSTE, Number.class);
+        if (posteId != null) {
+            PostePolice poste = new PostePolice();
+            poste.setId(posteId.longValue());
+            utilisateur.setPostePolice(poste);
+        }
+
+        Set<Role> roles = new HashSet<>();
+        List<?> libelles = claims.get(JwtUtil.CLAIM_ROLES, List.class);
+        if (libelles != null) {
+            for (Object libelle : libelles) {
+                Role role = new Role();
+                role.setLibelle(String.valueOf(libelle));
+                roles.add(role);
+            }
+        }
+        utilisateur.setRoles(roles);
+
+        return new CustomUserDetails(utilisateur);
+    }
+
     public Utilisateur getUtilisateur() {
         return this.utilisateur;
     }
@@ -5,13 +5,15 @@ import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UtilisateurRepository utilisateurRepository;
 
@@ -26,4 +28,15 @@ public class CustomUserDetailsService implements UserDetailsService {
 
         return new CustomUserDetails(utilisateur);
     }
+
+    // Appelé par DaoAuthenticationProvider après une connexion réussie dont le hash n'a
+    // pas le coût courant : même mot de passe, nouveau hash. Les jetons restent valides.
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String nouveauHash) {
+        Utilisateur utilisateur = ((CustomUserDetails) user).getUtilisateur();
+        utilisateurRepository.changerMotDePasseHash(utilisateur.getId(), nouveauHash);
+        utilisateur.setMotDePasseHash(nouveauHash);
+        return user;
+    }
 }
@@ -0,0 +1,92 @@
+package com.Smtd.GestionPerteDoc.security.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compteur d'événements par clé sur une fenêtre glissante, en mémoire fixe et sans verrou.
+ *
+ * Les clés ne sont pas stockées : chacune est hachée sur LIGNES tableaux d'emplacements
+ * (esquisse count-min) et l'estimation est le minimum des lignes. Une collision ne peut
+ * que surestimer le compte, jamais le sous-estimer. Chaque emplacement garde le compte de
+ * la période courante et de la précédente, le numéro de période et le compte tenant dans
+ * un seul long mis à jour par compareAndSet. La fenêtre glissante est approchée en
+ * pondérant la période précédente par la part de fenêtre qui la recouvre encore.
+ * Les graines de hachage sont tirées au démarrage : des clés en collision ne peuvent pas
+ * être fabriquées à l'avance.
+ */
+final class FenetreGlissante {
+
+    private static final int LIGNES = 2;
+    private static final int BITS_COMPTE = 24;
+    private static final long COMPTE_MAX = (1L << BITS_COMPTE) - 1;
+
+    private final long dureeMs;
+    private final int emplacements;
+    private final int[] graines = new int[LIGNES];
+    // [ligne][emplacement][parité de la période]
+    private final AtomicLongArray cases;
+
+    FenetreGlissante(long dureeMs, int emplacements) {
+        if (Integer.bitCount(emplacements) != 1) {
+            throw new IllegalArgumentException("Le nombre d'emplacements doit être une puissance de 2");
+        }
+        this.dureeMs = dureeMs;
+        this.emplacements = emplacements;
+        this.cases = new AtomicLongArray(LIGNES * emplacements * 2);
+        for (int i = 0; i < LIGNES; i++) {
+            graines[i] = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    /** Nombre d'événements de la clé sur la dernière fenêtre (estimation haute). */
+    long estimer(String cle, long maintenantMs) {
+        long periode = maintenantMs / dureeMs;
+        double recouvrement = 1.0 - (double) (maintenantMs % dureeMs) / dureeMs;
+        long estimation = Long.MAX_VALUE;
+        for (int ligne = 0; ligne < LIGNES; ligne++) {
+            int base = indice(ligne, cle);
+            long courant = lire(base + (int) (periode & 1), periode);
+            long precedent = lire(base + (int) ((periode - 1) & 1), periode - 1);
+            estimation = Math.min(estimation, courant + (long) Math.ceil(precedent * recouvrement));
+        }
+        return estimation;
+    }
+
+    void incrementer(String cle, long maintenantMs) {
+        long periode = maintenantMs / dureeMs;
+        for (int ligne = 0; ligne < LIGNES; ligne++) {
+            int i = indice(ligne, cle) + (int) (periode & 1);
+            while (true) {
+                long valeur = cases.get(i);
+                long nouvelle;
+                if (valeur >>> BITS_COMPTE == periode) {
+                    if ((valeur & COMPTE_MAX) == COMPTE_MAX) break;
+                    nouvelle = valeur + 1;
+                } else {
+                    // Emplacement d'une période révolue : repart de zéro
+                    nouvelle = (periode << BITS_COMPTE) | 1;
+                }
+                if (cases.compareAndSet(i, valeur, nouvelle)) break;
+            }
+        }
+    }
+
+    private long lire(int i, long periode) {
+        long valeur = cases.get(i);
+        return valeur >>> BITS_COMPTE == periode ? valeur & COMPTE_MAX : 0;
+    }
+
+    // Premier des deux emplacements (période paire, impaire) de la clé sur cette ligne
+    private int indice(int ligne, String cle) {
+        // FNV-1a à graine, puis mélange final
+        int h = graines[ligne];
+        for (int i = 0; i < cle.length(); i++) {
+            h = (h ^ cle.charAt(i)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return ((ligne * emplacements) + (h & (emplacements - 1))) << 1;
+    }
+}
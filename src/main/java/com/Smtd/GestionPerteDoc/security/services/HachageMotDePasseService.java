@@ -0,0 +1,177 @@
+package com.Smtd.GestionPerteDoc.security.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hachage et vérification BCrypt des mots de passe (encodeur de l'application).
+ *
+ * Les calculs BCrypt passent par un pool borné : au plus un calcul par coeur à la fois,
+ * et une file limitée au-delà de laquelle l'appel échoue aussitôt (HachageSatureException)
+ * au lieu d'occuper un thread Tomcat de plus. L'appelant attend le résultat.
+ *
+ * Le coût est fixé par configuration, identique sur tous les noeuds, ou calibré au démarrage
+ * (0) : le plus élevé dont le hachage reste sous la durée cible sur cette machine. Un hash
+ * d'un coût inférieur est recalculé à la connexion suivante (upgradeEncoding, voir
+ * CustomUserDetailsService) ; un hash d'un coût supérieur est conservé.
+ */
+@Service
+@Slf4j
+public class HachageMotDePasseService implements PasswordEncoder {
+
+    private static final Pattern BCRYPT = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    /** Pool de hachage saturé : la requête doit être rejouée plus tard. */
+    public static class HachageSatureException extends RuntimeException {
+        public HachageSatureException(String message) {
+            super(message);
+        }
+    }
+
+    private final int cout;
+    private final BCryptPasswordEncoder bcrypt;
+    private final ThreadPoolExecutor executeur;
+    private final long attenteMaxMs;
+
+    private final Timer hachages;
+    private final Timer verifications;
+    private final Counter refus;
+
+    public HachageMotDePasseService(MeterRegistry meterRegistry,
+                                    @Value("${gestionpertedoc.app.motDePasse.cout:12}") int cout,
+                                    @Value("${gestionpertedoc.app.motDePasse.dureeCibleMs:100}") long dureeCibleMs,
+                                    @Value("${gestionpertedoc.app.motDePasse.coutMin:10}") int coutMin,
+                                    @Value("${gestionpertedoc.app.motDePasse.coutMax:14}") int coutMax,
+                                    @Value("${gestionpertedoc.app.motDePasse.threads:0}") int threads,
+                                    @Value("${gestionpertedoc.app.motDePasse.file:64}") int capaciteFile,
+                                    @Value("${gestionpertedoc.app.motDePasse.attenteMaxMs:5000}") long attenteMaxMs) {
+        this.cout = cout > 0 ? cout : calibrer(dureeCibleMs, coutMin, coutMax);
+        this.bcrypt = new BCryptPasswordEncoder(this.cout);
+        this.attenteMaxMs = attenteMaxMs;
+
+        int taille = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger numero = new AtomicInteger();
+        this.executeur = new ThreadPoolExecutor(taille, taille, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capaciteFile),
+                tache -> {
+                    Thread t = new Thread(tache, "hachage-mdp-" + numero.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // Durées attente dans la file comprise
+        this.hachages = meterRegistry.timer("gestionpertedoc.motdepasse", "operation", "hachage");
+        this.verifications = meterRegistry.timer("gestionpertedoc.motdepasse", "operation", "verification");
+        this.refus = Counter.builder("gestionpertedoc.motdepasse.refus")
+                .description("Calculs BCrypt refusés, pool saturé").register(meterRegistry);
+        Gauge.builder("gestionpertedoc.motdepasse.file", executeur, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("gestionpertedoc.motdepasse.cout", this, s -> s.cout).register(meterRegistry);
+        log.info("Mots de passe : BCrypt coût {}, {} thread(s), file de {}", this.cout, taille, capaciteFile);
+    }
+
+    // ---------------- PasswordEncoder ----------------
+    @Override
+    public String encode(CharSequence motDePasse) {
+        return hachages.record(() -> executer(() -> bcrypt.encode(motDePasse)));
+    }
+
+    @Override
+    public boolean matches(CharSequence motDePasse, String hash) {
+        if (hash == null || hash.isEmpty()) return false;
+        Boolean correspond = verifications.record(() -> executer(() -> bcrypt.matches(motDePasse, hash)));
+        return Boolean.TRUE.equals(correspond);
+    }
+
+    /**
+     * Vrai si le hash a été calculé avec un coût inférieur au coût courant. Jamais à la
+     * baisse : des noeuds de coûts différents ne recalculent pas chacun leur tour le même hash.
+     */
+    @Override
+    public boolean upgradeEncoding(String hash) {
+        if (hash == null) return false;
+        Matcher m = BCRYPT.matcher(hash);
+        return m.find() && Integer.parseInt(m.group(1)) < cout;
+    }
+
+    public int cout() {
+        return cout;
+    }
+
+    private <T> T executer(Callable<T> calcul) {
+        Future<T> resultat;
+        try {
+            resultat = executeur.submit(calcul);
+        } catch (RejectedExecutionException e) {
+            refus.increment();
+            throw new HachageSatureException("Trop de vérifications de mot de passe en attente");
+        }
+        try {
+            return resultat.get(attenteMaxMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            resultat.cancel(true);
+            refus.increment();
+            throw new HachageSatureException("Vérification du mot de passe trop longue à obtenir");
+        } catch (InterruptedException e) {
+            resultat.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Calcul du mot de passe interrompu", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // ---------------- Calibrage ----------------
+    // Le temps BCrypt double à chaque point de coût : une mesure au coût minimal suffit
+    // pour retenir le coût le plus élevé qui reste sous la durée cible.
+    private static int calibrer(long dureeCibleMs, int coutMin, int coutMax) {
+        // Préchauffage (compilation JIT) à coût faible
+        BCryptPasswordEncoder prechauffage = new BCryptPasswordEncoder(4);
+        for (int i = 0; i < 20; i++) prechauffage.encode("calibrage");
+
+        BCryptPasswordEncoder mesure = new BCryptPasswordEncoder(coutMin);
+        long meilleureNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long debut = System.nanoTime();
+            mesure.encode("calibrage");
+            meilleureNanos = Math.min(meilleureNanos, System.nanoTime() - debut);
+        }
+
+        int cout = coutMin;
+        double dureeMs = meilleureNanos / 1_000_000.0;
+        while (cout < coutMax && dureeMs * 2 <= dureeCibleMs) {
+            cout++;
+            dureeMs *= 2;
+        }
+        log.info("Calibrage BCrypt : {} ms au coût {}, coût retenu {} (cible {} ms)",
+                Math.round(meilleureNanos / 1_000_000.0), coutMin, cout, dureeCibleMs);
+        return cout;
+    }
+
+    @PreDestroy
+    void arreter() {
+        executeur.shutdownNow();
+    }
+}
@@ -0,0 +1,84 @@
+package com.Smtd.GestionPerteDoc.security.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Limitation des tentatives de connexion, vérifiée avant toute comparaison BCrypt.
+ *
+ * - par adresse IP : au plus maxParIp tentatives sur la fenêtre (limite le débit d'une source) ;
+ * - par compte : au plus maxEchecsParCompte échecs sur la fenêtre (attaque ciblée sur un compte).
+ *
+ * Un refus ne coûte que quelques lectures atomiques : une rafale de tentatives ne consomme
+ * plus de CPU en hachage. Mémoire fixe quel que soit le nombre d'adresses ou de comptes
+ * (voir FenetreGlissante). État propre à chaque noeud.
+ */
+@Service
+public class LimiteurConnexionService {
+
+    /** Tentative refusée, et délai conseillé avant de réessayer. */
+    public record Refus(String motif, long reessayerDansSecondes) {}
+
+    private final long fenetreMs;
+    private final int maxParIp;
+    private final int maxEchecsParCompte;
+    private final FenetreGlissante tentativesParIp;
+    private final FenetreGlissante echecsParCompte;
+
+    private final Counter refusIp;
+    private final Counter refusCompte;
+
+    public LimiteurConnexionService(MeterRegistry meterRegistry,
+                                    @Value("${gestionpertedoc.app.connexion.fenetreSecondes:60}") long fenetreSecondes,
+                                    @Value("${gestionpertedoc.app.connexion.maxParIp:30}") int maxParIp,
+                                    @Value("${gestionpertedoc.app.connexion.maxEchecsParCompte:10}") int maxEchecsParCompte,
+                                    @Value("${gestionpertedoc.app.connexion.emplacements:8192}") int emplacements) {
+        this.fenetreMs = fenetreSecondes * 1000;
+        this.maxParIp = maxParIp;
+        this.maxEchecsParCompte = maxEchecsParCompte;
+        this.tentativesParIp = new FenetreGlissante(fenetreMs, emplacements);
+        this.echecsParCompte = new FenetreGlissante(fenetreMs, emplacements);
+
+        this.refusIp = compteur(meterRegistry, "ip");
+        this.refusCompte = compteur(meterRegistry, "compte");
+    }
+
+    /**
+     * Refus si l'adresse ou le compte a dépassé sa limite ; sinon la tentative est comptée
+     * pour l'adresse. Les tentatives refusées ne sont pas comptées.
+     */
+    public Optional<Refus> autoriser(String email, String ip) {
+        long maintenant = System.currentTimeMillis();
+        if (echecsParCompte.estimer(cleCompte(email), maintenant) >= maxEchecsParCompte) {
+            refusCompte.increment();
+            return Optional.of(new Refus("compte", fenetreMs / 1000));
+        }
+        String cleIp = ip == null ? "" : ip;
+        if (tentativesParIp.estimer(cleIp, maintenant) >= maxParIp) {
+            refusIp.increment();
+            return Optional.of(new Refus("ip", fenetreMs / 1000));
+        }
+        tentativesParIp.incrementer(cleIp, maintenant);
+        return Optional.empty();
+    }
+
+    public void enregistrerEchec(String email) {
+        echecsParCompte.incrementer(cleCompte(email), System.currentTimeMillis());
+    }
+
+    private static String cleCompte(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Counter compteur(MeterRegistry meterRegistry, String motif) {
+        return Counter.builder("gestionpertedoc.connexion.refus")
+                .description("Tentatives de connexion refusées avant vérification du mot de passe")
+                .tag("motif", motif).register(meterRegistry);
+    }
+}
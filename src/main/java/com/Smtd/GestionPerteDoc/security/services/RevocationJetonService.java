@@ -0,0 +1,82 @@
+package com.Smtd.GestionPerteDoc.security.services;
+
+import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vérifie qu'un jeton n'a pas été révoqué : compte désactivé, supprimé, ou jetons
+ * révoqués après l'émission (changement de rôles, de mot de passe...).
+ *
+ * L'état des comptes est gardé en mémoire pendant une courte durée : la base n'est
+ * consultée qu'à l'expiration de l'entrée, pas à chaque requête. Les modifications
+ * faites sur ce noeud invalident l'entrée immédiatement ; sur les autres noeuds elles
+ * s'appliquent au plus tard après la durée de cache.
+ */
+@Service
+public class RevocationJetonService {
+
+    private record EtatCompte(boolean autorise, long revoqueLeMs, long expireLeNanos) {}
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final long dureeCacheNanos;
+    private final Map<Long, EtatCompte> etats = new ConcurrentHashMap<>();
+
+    public RevocationJetonService(UtilisateurRepository utilisateurRepository,
+                                  @Value("${gestionpertedoc.app.jwtEtatCacheMs:30000}") long dureeCacheMs) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.dureeCacheNanos = dureeCacheMs * 1_000_000L;
+    }
+
+    public boolean estValide(Long utilisateurId, Date emisLe) {
+        long maintenant = System.nanoTime();
+        EtatCompte etat = etats.get(utilisateurId);
+        if (etat == null || maintenant - etat.expireLeNanos() > 0) {
+            etat = charger(utilisateurId, maintenant);
+            etats.put(utilisateurId, etat);
+        }
+        if (!etat.autorise()) return false;
+        // Comparaison à la milliseconde (JwtUtil.emisLe) : un jeton émis juste avant la révocation,
+        // dans la même seconde, est bien refusé
+        return emisLe == null || etat.revoqueLeMs() == 0 || emisLe.getTime() >= etat.revoqueLeMs();
+    }
+
+    /**
+     * Oublie l'état mis en cache, après validation de la transaction en cours s'il y en a une.
+     */
+    public void invalider(Long utilisateurId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    etats.remove(utilisateurId);
+                }
+            });
+        }
+        etats.remove(utilisateurId);
+    }
+
+    private EtatCompte charger(Long utilisateurId, long maintenant) {
+        List<Object[]> lignes = utilisateurRepository.findEtatCompte(utilisateurId);
+        long expire = maintenant + dureeCacheNanos;
+        if (lignes.isEmpty()) {
+            return new EtatCompte(false, 0, expire);
+        }
+        Object[] ligne = lignes.get(0);
+        boolean actif = (Boolean) ligne[0];
+        boolean supprime = (Boolean) ligne[1];
+        LocalDateTime revoqueLe = (LocalDateTime) ligne[2];
+        long revoqueLeMs = revoqueLe != null ? revoqueLe.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+        return new EtatCompte(actif && !supprime, revoqueLeMs, expire);
+    }
+}
@@ -0,0 +1,304 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache disque des récépissés PDF.
+ *
+ * Une entrée par déclaration, dans un fichier {id}-{version}-{etag}.pdf. La version est
+ * l'empreinte du contenu à rendre (modèle, valeurs des champs, QR code signé) : une déclaration
+ * modifiée ne retrouve jamais un ancien récépissé. L'ETag est l'empreinte des octets du
+ * fichier, un même PDF n'étant pas reproduit à l'identique par deux rendus.
+ * La taille totale est bornée : les récépissés les moins récemment servis sont évincés.
+ * L'index est reconstruit au démarrage à partir des noms de fichiers.
+ */
+@Service
+@Slf4j
+public class CacheRecuService {
+
+    private static final Pattern NOM_FICHIER = Pattern.compile("(\\d+)-([0-9a-f]{32})-([0-9a-f]{32})\\.pdf");
+
+    /** Récépissé présent sur disque, prêt à être servi. */
+    public record Recu(Path fichier, long taille, String etag) {}
+
+    /**
+     * Récépissé ouvert en lecture. Le canal reste lisible même si le fichier est ensuite
+     * évincé ou invalidé : c'est lui qu'il faut servir, pas le chemin.
+     */
+    public record RecuOuvert(Recu recu, FileChannel canal) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    // Ouvertures tentées quand le fichier disparaît entre obtenir() et l'ouverture
+    private static final int TENTATIVES_OUVERTURE = 3;
+
+    private record Entree(String version, Recu recu) {}
+
+    private final Path dossier;
+    private final long tailleMax;
+    private final SignatureRecuService signatureRecuService;
+    private final RegistreGabaritsService registreGabaritsService;
+    private final Counter trouves;
+    private final Counter rendus;
+
+    // Ordre d'accès : le récépissé le moins récemment servi en tête
+    private final LinkedHashMap<Long, Entree> entrees = new LinkedHashMap<>(64, 0.75f, true);
+    private long tailleTotale;
+
+    // Rendus en cours, par déclaration et version
+    private final ConcurrentHashMap<String, CompletableFuture<Recu>> enCours = new ConcurrentHashMap<>();
+
+    public CacheRecuService(@Value("${gestionpertedoc.app.recuCache.dossier:${java.io.tmpdir}/gestionpertedoc-recus}") String dossier,
+                            @Value("${gestionpertedoc.app.recuCache.tailleMaxMo:256}") long tailleMaxMo,
+                            SignatureRecuService signatureRecuService,
+                            RegistreGabaritsService registreGabaritsService,
+                            MeterRegistry meterRegistry) throws IOException {
+        this.dossier = Paths.get(dossier);
+        this.tailleMax = tailleMaxMo * 1024 * 1024;
+        this.signatureRecuService = signatureRecuService;
+        this.registreGabaritsService = registreGabaritsService;
+        Files.createDirectories(this.dossier);
+        charger();
+
+        this.trouves = Counter.builder("gestionpertedoc.recu.cache")
+                .tag(MetriquesConfig.TAG_RESULTAT, "trouve").register(meterRegistry);
+        this.rendus = Counter.builder("gestionpertedoc.recu.cache")
+                .tag(MetriquesConfig.TAG_RESULTAT, "rendu").register(meterRegistry);
+        Gauge.builder("gestionpertedoc.recu.cache.taille", this, CacheRecuService::tailleTotale)
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Récépissé de la déclaration (chargée avec son déclarant et son type de document),
+     * rendu puis mis en cache s'il est absent ou périmé.
+     */
+    public Recu obtenir(Declaration declaration) throws IOException {
+        Long id = declaration.getId();
+        // Le jeton signé entre dans la version : un changement de clé périme les récépissés en cache
+        String jeton = signatureRecuService.jeton(declaration);
+        // Gabarit choisi une fois : un rechargement pendant le rendu ne mélange pas deux versions
+        GabaritRecu gabarit = registreGabaritsService.gabaritPour(declaration);
+        String version = gabarit.version(declaration, jeton);
+
+        synchronized (this) {
+            Entree entree = entrees.get(id);
+            if (entree != null && entree.version().equals(version) && Files.exists(entree.recu().fichier())) {
+                trouves.increment();
+                return entree.recu();
+            }
+        }
+
+        // Un seul rendu par version : un appel concurrent (pré-rendu, email, téléchargement)
+        // attend le fichier en cours d'écriture au lieu de le rendre une seconde fois
+        String cle = id + "-" + version;
+        CompletableFuture<Recu> rendu = new CompletableFuture<>();
+        CompletableFuture<Recu> enCoursAilleurs = enCours.putIfAbsent(cle, rendu);
+        if (enCoursAilleurs != null) {
+            return attendre(enCoursAilleurs);
+        }
+        try {
+            rendus.increment();
+            Recu recu = indexer(id, version, rendre(id, version, declaration, gabarit, jeton));
+            rendu.complete(recu);
+            return recu;
+        } catch (IOException | RuntimeException e) {
+            rendu.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCours.remove(cle);
+        }
+    }
+
+    /**
+     * Comme {@link #obtenir}, mais renvoie le fichier déjà ouvert. Une autre requête peut
+     * supprimer le fichier (éviction, invalidation) juste après obtenir() : il est alors
+     * rendu de nouveau. L'appelant ferme le récépissé ouvert.
+     */
+    public RecuOuvert ouvrir(Declaration declaration) throws IOException {
+        for (int tentative = 1; ; tentative++) {
+            Recu recu = obtenir(declaration);
+            try {
+                return new RecuOuvert(recu, FileChannel.open(recu.fichier(), StandardOpenOption.READ));
+            } catch (NoSuchFileException e) {
+                if (tentative >= TENTATIVES_OUVERTURE) throw e;
+                log.debug("Récépissé {} supprimé avant ouverture, nouveau rendu", recu.fichier());
+            }
+        }
+    }
+
+    private Recu indexer(Long id, String version, Recu recu) {
+        List<Path> aSupprimer = new ArrayList<>();
+        synchronized (this) {
+            Entree ancienne = entrees.put(id, new Entree(version, recu));
+            if (ancienne != null) {
+                tailleTotale -= ancienne.recu().taille();
+                if (!ancienne.recu().fichier().equals(recu.fichier())) aSupprimer.add(ancienne.recu().fichier());
+            }
+            tailleTotale += recu.taille();
+            evincer(aSupprimer);
+        }
+        supprimer(aSupprimer);
+        return recu;
+    }
+
+    private static Recu attendre(CompletableFuture<Recu> rendu) throws IOException {
+        try {
+            return rendu.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /**
+     * Retire le récépissé d'une déclaration modifiée.
+     */
+    public void invalider(Long declarationId) {
+        Entree entree;
+        synchronized (this) {
+            entree = entrees.remove(declarationId);
+            if (entree != null) tailleTotale -= entree.recu().taille();
+        }
+        if (entree != null) supprimer(List.of(entree.recu().fichier()));
+    }
+
+    synchronized long tailleTotale() {
+        return tailleTotale;
+    }
+
+    // ---------------- Rendu ----------------
+    // Écrit dans un fichier temporaire du même dossier puis le renomme : un lecteur ne voit
+    // jamais un récépissé incomplet
+    private Recu rendre(Long id, String version, Declaration declaration, GabaritRecu gabarit, String jeton)
+            throws IOException {
+        byte[] qrCode = signatureRecuService.qrCode(id, jeton);
+        Path temporaire = Files.createTempFile(dossier, "rendu-", ".tmp");
+        try {
+            MessageDigest digest = GabaritRecu.sha256();
+            long taille;
+            try (OutputStream sortie = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaire)), digest)) {
+                taille = PdfGeneratorService.ecrireDeclarationPdf(declaration, gabarit, qrCode, sortie);
+            }
+            String etag = HexFormat.of().formatHex(digest.digest(), 0, 16);
+            Path fichier = dossier.resolve(id + "-" + version + "-" + etag + ".pdf");
+            Files.move(temporaire, fichier, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return new Recu(fichier, taille, etag);
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    // ---------------- Éviction ----------------
+    // Appelée sous verrou : les fichiers sont supprimés ensuite, hors verrou.
+    // Le dernier récépissé servi est toujours gardé, même s'il dépasse à lui seul la limite.
+    private void evincer(List<Path> aSupprimer) {
+        Iterator<Entree> iterateur = entrees.values().iterator();
+        while (tailleTotale > tailleMax && entrees.size() > 1) {
+            Entree plusAncienne = iterateur.next();
+            iterateur.remove();
+            tailleTotale -= plusAncienne.recu().taille();
+            aSupprimer.add(plusAncienne.recu().fichier());
+        }
+    }
+
+    private void supprimer(List<Path> fichiers) {
+        for (Path fichier : fichiers) {
+            try {
+                Files.deleteIfExists(fichier);
+            } catch (IOException e) {
+                log.warn("Suppression impossible du récépissé en cache {} : {}", fichier, e.getMessage());
+            }
+        }
+    }
+
+    // ---------------- Reprise au démarrage ----------------
+    // Les fichiers existants sont indexés du plus ancien au plus récent (date de modification)
+    private void charger() throws IOException {
+        Map<Long, Path> parId = new HashMap<>();
+        List<Path> aSupprimer = new ArrayList<>();
+
+        try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(dossier)) {
+            for (Path fichier : fichiers) {
+                Matcher m = NOM_FICHIER.matcher(fichier.getFileName().toString());
+                if (!m.matches()) {
+                    // Rendu interrompu par un arrêt du noeud
+                    if (fichier.getFileName().toString().endsWith(".tmp")) aSupprimer.add(fichier);
+                    continue;
+                }
+                Path precedent = parId.put(Long.valueOf(m.group(1)), fichier);
+                if (precedent != null) {
+                    // Deux versions d'une même déclaration : seule la plus récente est gardée
+                    if (dateModification(precedent).compareTo(dateModification(fichier)) > 0) {
+                        parId.put(Long.valueOf(m.group(1)), precedent);
+                        aSupprimer.add(fichier);
+                    } else {
+                        aSupprimer.add(precedent);
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<Long, Path>> tries = new ArrayList<>(parId.entrySet());
+        tries.sort((a, b) -> dateModification(a.getValue()).compareTo(dateModification(b.getValue())));
+        for (Map.Entry<Long, Path> e : tries) {
+            Matcher m = NOM_FICHIER.matcher(e.getValue().getFileName().toString());
+            m.matches();
+            long taille = Files.size(e.getValue());
+            entrees.put(e.getKey(), new Entree(m.group(2), new Recu(e.getValue(), taille, m.group(3))));
+            tailleTotale += taille;
+        }
+        evincer(aSupprimer);
+        supprimer(aSupprimer);
+        log.info("Cache des récépissés : {} fichier(s), {} octets dans {}", entrees.size(), tailleTotale, dossier);
+    }
+
+    private static FileTime dateModification(Path fichier) {
+        try {
+            return Files.getLastModifiedTime(fichier);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
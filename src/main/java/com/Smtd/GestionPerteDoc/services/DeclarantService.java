@@ -1,10 +1,13 @@
 package com.Smtd.GestionPerteDoc.services;
 
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
 import com.Smtd.GestionPerteDoc.entities.Declarant;
 import com.Smtd.GestionPerteDoc.entities.Utilisateur;
 import com.Smtd.GestionPerteDoc.repositories.DeclarantRepository;
 import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
@@ -21,6 +24,7 @@ public class DeclarantService {
 
     private final DeclarantRepository declarantRepository;
     private final UtilisateurRepository utilisateurRepository;
+    private final MeterRegistry meterRegistry;
 
     // ===================== CRÉATION =====================
 
@@ -48,49 +52,61 @@ public class DeclarantService {
 
     /**
      * Trouve un déclarant existant par identifiants ou le crée si inexistant.
+     * Une requête de résolution puis, si besoin, une insertion atomique :
+     * deux agents qui enregistrent la même personne obtiennent le même déclarant.
      */
     @Transactional
     public Declarant trouverOuCreerDeclarant(Declarant declarantData) {
-        normaliserChamps(declarantData);
-
-        // --- Recherche par identifiants officiels (NINA, CNI, passeport) ---
-        Optional<Declarant> declarantExistant = trouverDeclarantParIdentifiants(declarantData);
-        if (declarantExistant.isPresent()) return declarantExistant.get();
-
-        // --- Recherche par email dans Declarant ---
-        if (declarantData.getEmail() != null && !declarantData.getEmail().isBlank()) {
-            Optional<Declarant> declarantParEmail = declarantRepository.findByEmail(declarantData.getEmail());
-            if (declarantParEmail.isPresent()) return declarantParEmail.get();
-
-            // --- Si non trouvé, vérifier l’email dans Utilisateur ---
-            Optional<Utilisateur> utilisateurExistant = utilisateurRepository.findByEmail(declarantData.getEmail());
-            if (utilisateurExistant.isPresent()) {
-                // Si un utilisateur existe, on **exige de compléter les champs obligatoires**
-                if (declarantData.getNom() == null || declarantData.getNom().isBlank())
-                    throw new RuntimeException("Le nom est obligatoire pour créer un déclarant basé sur un utilisateur existant");
-                if (declarantData.getPrenom() == null || declarantData.getPrenom().isBlank())
-                    throw new RuntimeException("Le prénom est obligatoire pour créer un déclarant basé sur un utilisateur existant");
-                if (declarantData.getTelephone() == null || declarantData.getTelephone().isBlank())
-                    throw new RuntimeException("Le téléphone est obligatoire pour créer un déclarant basé sur un utilisateur existant");
-                if (declarantData.getAdresse() == null || declarantData.getAdresse().isBlank())
-                    throw new RuntimeException("L'adresse est obligatoire pour créer un déclarant basé sur un utilisateur existant");
-
-                // On peut maintenant créer le declarant complet
-                Declarant nouveauDeclarant = new Declarant();
-                copierChamps(nouveauDeclarant, declarantData);
-                return declarantRepository.save(nouveauDeclarant);
+        Timer.Sample chrono = Timer.start(meterRegistry);
+        String resultat = "erreur";
+        int requetes = 0;
+        try {
+            normaliserChamps(declarantData);
+
+            // --- Recherche sur NINA, CNI, passeport, email et téléphone en une requête ---
+            requetes++;
+            Optional<Declarant> declarantExistant = resoudreDeclarant(declarantData);
+            if (declarantExistant.isPresent()) {
+                resultat = "existant";
+                return declarantExistant.get();
             }
-        }
 
-        // --- Vérifications d'unicité avant création d'un nouveau declarant ---
-        if (declarantData.getEmail() != null) verifierEmailUniqueGlobal(declarantData);
-        verifierIdentifiantsUniques(declarantData);
-        if (declarantData.getTelephone() != null) verifierTelephoneUnique(declarantData.getTelephone(), declarantData.getId());
+            verifierChampsObligatoires(declarantData);
+
+            // --- Création atomique du nouveau déclarant ---
+            Declarant nouveauDeclarant = new Declarant();
+            copierChamps(nouveauDeclarant, declarantData);
+            nouveauDeclarant.setId(UUID.randomUUID());
+
+            requetes++;
+            int insere = declarantRepository.insererSiAbsent(
+                    nouveauDeclarant.getId(),
+                    nouveauDeclarant.getNumNina(),
+                    nouveauDeclarant.getNumCarteIdentite(),
+                    nouveauDeclarant.getNumPassePort(),
+                    nouveauDeclarant.getNom(),
+                    nouveauDeclarant.getPrenom(),
+                    nouveauDeclarant.getDateNaissance(),
+                    nouveauDeclarant.getLieuNaissance(),
+                    nouveauDeclarant.getEmail(),
+                    nouveauDeclarant.getTelephone(),
+                    nouveauDeclarant.getAdresse());
+            if (insere == 1) {
+                resultat = "cree";
+                return nouveauDeclarant;
+            }
 
-        // --- Création d’un nouveau declarant ---
-        Declarant nouveauDeclarant = new Declarant();
-        copierChamps(nouveauDeclarant, declarantData);
-        return declarantRepository.save(nouveauDeclarant);
+            // --- Conflit : la même personne vient d'être enregistrée par un autre agent ---
+            requetes++;
+            Declarant concurrent = resoudreDeclarant(declarantData)
+                    .orElseThrow(() -> new RuntimeException("Impossible d'enregistrer le déclarant, veuillez réessayer"));
+            resultat = "concurrent";
+            return concurrent;
+        } finally {
+            chrono.stop(meterRegistry.timer("gestionpertedoc.declarant.resolution", MetriquesConfig.TAG_RESULTAT, resultat));
+            // Nombre de requêtes SQL émises par résolution (1 à 3)
+            meterRegistry.summary("gestionpertedoc.declarant.requetes", MetriquesConfig.TAG_RESULTAT, resultat).record(requetes);
+        }
     }
 
     // ===================== MISE À JOUR =====================
@@ -168,24 +184,49 @@ public class DeclarantService {
 
     // ===================== RECHERCHE PAR IDENTIFIANTS (PRIVÉ) =====================
 
-    private Optional<Declarant> trouverDeclarantParIdentifiants(Declarant declarant) {
-        Optional<Declarant> result = Optional.empty();
-
-        if (declarant.getNumNina() != null) {
-            result = declarantRepository.findByNumNina(declarant.getNumNina());
-        }
-        if (result.isEmpty() && declarant.getNumCarteIdentite() != null) {
-            result = declarantRepository.findByNumCarteIdentite(declarant.getNumCarteIdentite());
-        }
-        if (result.isEmpty() && declarant.getNumPassePort() != null) {
-            result = declarantRepository.findByNumPassePort(declarant.getNumPassePort());
+    /**
+     * Priorité des correspondances : NINA, CNI, passeport, puis email.
+     * Un téléphone déjà attribué à une autre personne est refusé.
+     */
+    private Optional<Declarant> resoudreDeclarant(Declarant declarant) {
+        List<Declarant> correspondances = declarantRepository.findCorrespondances(
+                declarant.getNumNina(),
+                declarant.getNumCarteIdentite(),
+                declarant.getNumPassePort(),
+                declarant.getEmail(),
+                declarant.getTelephone());
+        if (correspondances.isEmpty()) return Optional.empty();
+
+        Optional<Declarant> result = correspondance(correspondances, declarant.getNumNina(), Declarant::getNumNina);
+        if (result.isEmpty()) result = correspondance(correspondances, declarant.getNumCarteIdentite(), Declarant::getNumCarteIdentite);
+        if (result.isEmpty()) result = correspondance(correspondances, declarant.getNumPassePort(), Declarant::getNumPassePort);
+        if (result.isEmpty()) result = correspondance(correspondances, declarant.getEmail(), Declarant::getEmail);
+
+        if (result.isEmpty()) {
+            throw new RuntimeException("Un déclarant avec ce téléphone existe déjà !");
         }
-
         return result;
     }
 
+    private Optional<Declarant> correspondance(List<Declarant> candidats, String valeur,
+                                               Function<Declarant, String> champ) {
+        if (valeur == null) return Optional.empty();
+        return candidats.stream().filter(d -> valeur.equals(champ.apply(d))).findFirst();
+    }
+
     // ===================== VALIDATIONS (PRIVÉ) =====================
 
+    private void verifierChampsObligatoires(Declarant declarant) {
+        if (declarant.getNom() == null)
+            throw new RuntimeException("Le nom est obligatoire pour créer un déclarant");
+        if (declarant.getPrenom() == null)
+            throw new RuntimeException("Le prénom est obligatoire pour créer un déclarant");
+        if (declarant.getTelephone() == null)
+            throw new RuntimeException("Le téléphone est obligatoire pour créer un déclarant");
+        if (declarant.getAdresse() == null)
+            throw new RuntimeException("L'adresse est obligatoire pour créer un déclarant");
+    }
+
     private void verifierEmailUniqueGlobal(Declarant declarant) {
         Optional<Declarant> declarantAvecEmail = declarantRepository.findByEmail(declarant.getEmail());
         if (declarantAvecEmail.isPresent() && !declarantAvecEmail.get().getId().equals(declarant.getId())) {
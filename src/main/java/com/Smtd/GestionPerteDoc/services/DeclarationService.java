@@ -1,7 +1,10 @@
 package com.Smtd.GestionPerteDoc.services;
 
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
 import com.Smtd.GestionPerteDoc.dtos.DTOMapper;
 import com.Smtd.GestionPerteDoc.dtos.DeclarationDTO;
+import com.Smtd.GestionPerteDoc.dtos.DeclarationLigneDTO;
+import com.Smtd.GestionPerteDoc.dtos.PageDeclarationsDTO;
 import com.Smtd.GestionPerteDoc.dtos.PosteStatsDTO;
 import com.Smtd.GestionPerteDoc.entities.Declarant;
 import com.Smtd.GestionPerteDoc.entities.Declaration;
@@ -12,15 +15,20 @@ import com.Smtd.GestionPerteDoc.repositories.DeclarantRepository;
 import com.Smtd.GestionPerteDoc.repositories.DeclarationRepository;
 import com.Smtd.GestionPerteDoc.repositories.TypeDocumentRepository;
 import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -33,15 +41,37 @@ public class DeclarationService {
     private final TypeDocumentRepository typeDocumentRepository;
     private final DeclarantService declarantService;
     private final NumeroReferenceService numeroReferenceService;
+    private final EmailOutboxService emailOutboxService;
+    private final SmsOutboxService smsOutboxService;
+    private final CacheRecuService cacheRecuService;
+    private final PrerenduRecuService prerenduRecuService;
+    private final MeterRegistry meterRegistry;
 
-    @Autowired
-    private EmailService emailService;
+    private static final int TAILLE_PAGE_DEFAUT = 50;
+    private static final int TAILLE_PAGE_MAX = 200;
 
     @Autowired
     private UtilisateurService utilisateurService; 
 
  // === CRÉATION DÉCLARATION ===
     public Declaration creerDeclaration(Declaration declaration, Utilisateur utilisateurConnecte) {
+        Timer.Sample chrono = Timer.start(meterRegistry);
+        String resultat = "erreur";
+        try {
+            Declaration creee = enregistrerDeclaration(declaration, utilisateurConnecte);
+            resultat = "succes";
+            return creee;
+        } finally {
+            // Durée sans le poste (histogramme) ; décompte par poste sur un compteur
+            chrono.stop(meterRegistry.timer("gestionpertedoc.declaration.creation",
+                    MetriquesConfig.TAG_RESULTAT, resultat));
+            meterRegistry.counter("gestionpertedoc.declaration.creees",
+                    MetriquesConfig.TAG_POSTE, MetriquesConfig.tagPoste(utilisateurConnecte),
+                    MetriquesConfig.TAG_RESULTAT, resultat).increment();
+        }
+    }
+
+    private Declaration enregistrerDeclaration(Declaration declaration, Utilisateur utilisateurConnecte) {
         if (!verifierPermissionsCreation(utilisateurConnecte)) {
             throw new RuntimeException("Permission refusée - Rôles autorisés: ADMIN, SUPERVISEUR, AGENT.");
         }
@@ -66,6 +96,7 @@ public class DeclarationService {
         declaration.setTypeDocument(typeDocument);
 
         declaration.setUtilisateur(utilisateurConnecte);
+        declaration.setPosteId(utilisateurConnecte.getPostePolice() != null ? utilisateurConnecte.getPostePolice().getId() : null);
         declaration.setCreePar(utilisateurConnecte);
         declaration.setCreeLe(new Date());
         declaration.setDateDeclaration(new Date());
@@ -74,20 +105,17 @@ public class DeclarationService {
         if (declaration.getStatut() == null) 
             declaration.setStatut(StatutDeclaration.ENREGISTREE);
         if (declaration.getNumeroReference() == null || declaration.getNumeroReference().isEmpty())
-            declaration.setNumeroReference(numeroReferenceService.generateNumeroReference());
+            declaration.setNumeroReference(numeroReferenceService.generateNumeroReference(
+                        utilisateurConnecte.getPostePolice() != null ? utilisateurConnecte.getPostePolice().getId() : null));
 
         Declaration saved = declarationRepository.save(declaration);
         declarationRepository.flush();
 
-        // === ENVOI EMAIL AVEC PDF ===
-        try {
-            byte[] pdfBytes = PdfGeneratorService.generateDeclarationPdf(saved);
-            if (saved.getDeclarant().getEmail() != null && !saved.getDeclarant().getEmail().isEmpty()) {
-                emailService.envoyerEmailAvecPdf(saved.getDeclarant().getEmail(), pdfBytes, saved.getNumeroReference());
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // === EMAIL AVEC PDF : mis en file, envoyé après validation de la transaction ===
+        emailOutboxService.planifierRecuDeclaration(saved);
+        smsOutboxService.planifierRecuDeclaration(saved);
+        // === RÉCÉPISSÉ : rendu en arrière-plan après validation, repris par l'email et le téléchargement ===
+        prerenduRecuService.planifier(saved.getId());
 
         return declarationRepository.findById(saved.getId())
                 .orElseThrow(() -> new RuntimeException("Échec de la persistance - Déclaration non retrouvée après sauvegarde"));
@@ -122,6 +150,8 @@ public class DeclarationService {
 
         Declaration saved = declarationRepository.save(declaration);
         declarationRepository.flush();
+        cacheRecuService.invalider(saved.getId());
+        prerenduRecuService.planifier(saved.getId());
 
         return saved;
     }
@@ -145,18 +175,14 @@ public class DeclarationService {
         declaration.setModifieLe(new Date());
 
         declarationRepository.saveAndFlush(declaration);
+        cacheRecuService.invalider(declarationId);
+        prerenduRecuService.planifier(declarationId);
 
-        // Envoi du mail si le statut devient VALIDEE
+        // Mise en file du mail (et du SMS) si le statut devient VALIDEE
         if (nouveauStatut == StatutDeclaration.VALIDEE) {
-            try {
-                String emailDestinataire = declaration.getDeclarant().getEmail();
-                String numeroReference = declaration.getNumeroReference();
-                emailService.envoyerEmailDeclarationValidee(emailDestinataire, numeroReference);
-                System.out.println("Email de déclaration validée envoyé à : " + emailDestinataire);
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.err.println("Erreur lors de l'envoi de l'email pour la déclaration validée");
-            }
+            emailOutboxService.planifierDeclarationValidee(
+                    declaration.getDeclarant().getEmail(), declaration.getNumeroReference());
+            smsOutboxService.planifierDeclarationValidee(declaration);
         }
 
         DeclarationDTO dto = DTOMapper.toDeclarationDTO(declaration);
@@ -216,77 +242,118 @@ public class DeclarationService {
                 .orElseThrow(() -> new RuntimeException("Déclaration introuvable: " + numeroReference));
     }
 
-    // === LISTE DÉCLARATIONS ===
-    public List<Declaration> listerToutesDeclarations() {
-        return declarationRepository.findAllWithDetails();
+    // === LISTE PAGINÉE PAR CURSEUR ===
+    // Seul chemin de lecture des listes : projection DeclarationLigneDTO, sans entité chargée
+    @Transactional(readOnly = true)
+    public PageDeclarationsDTO listerPageParUtilisateur(Long utilisateurId, boolean supprime, String curseur,
+                                                       Integer taille, StatutDeclaration statut, Long typeDocumentId) {
+        int tailleEffective = normaliserTaille(taille);
+        PositionCurseur position = decoderCurseur(curseur);
+        List<DeclarationLigneDTO> lignes = declarationRepository.findPageByUtilisateurId(
+                utilisateurId, supprime, statut, typeDocumentId,
+                position.creeLe(), position.id(), PageRequest.of(0, tailleEffective + 1));
+        return construirePage(lignes, tailleEffective);
     }
 
-    public List<Declaration> listerDeclarationsActivesParUtilisateur(Long utilisateurId) {
-        return declarationRepository.findByUtilisateurIdAndSupprimeFalseWithDetails(utilisateurId);
+    @Transactional(readOnly = true)
+    public PageDeclarationsDTO listerPageParPoste(Long posteId, boolean supprime, String curseur,
+                                                  Integer taille, StatutDeclaration statut, Long typeDocumentId) {
+        int tailleEffective = normaliserTaille(taille);
+        PositionCurseur position = decoderCurseur(curseur);
+        List<DeclarationLigneDTO> lignes = declarationRepository.findPageByPostePoliceId(
+                posteId, supprime, statut, typeDocumentId,
+                position.creeLe(), position.id(), PageRequest.of(0, tailleEffective + 1));
+        return construirePage(lignes, tailleEffective);
     }
 
-    public List<Declaration> listerDeclarationsSupprimeesParUtilisateur(Long utilisateurId) {
-        return declarationRepository.findByUtilisateurIdAndSupprimeTrueWithDetails(utilisateurId);
-    }
+    private PageDeclarationsDTO construirePage(List<DeclarationLigneDTO> lignes, int taille) {
+        // Une ligne de plus que la taille demandée indique l'existence d'une page suivante
+        boolean pageSuivante = lignes.size() > taille;
+        List<DeclarationLigneDTO> page = pageSuivante ? lignes.subList(0, taille) : lignes;
 
-    public List<Declaration> listerDeclarationsActivesParPoste(Long posteId) {
-        return declarationRepository.findByUtilisateurPostePoliceIdAndSupprimeFalseWithDetails(posteId);
-    }
+        String curseurSuivant = null;
+        if (pageSuivante) {
+            DeclarationLigneDTO derniere = page.get(page.size() - 1);
+            curseurSuivant = encoderCurseur(derniere.creeLe(), derniere.id());
+        }
 
-    public List<Declaration> listerDeclarationsSupprimeesParPoste(Long posteId) {
-        return declarationRepository.findByUtilisateurPostePoliceIdAndSupprimeTrueWithDetails(posteId);
+        List<DeclarationDTO> dtos = page.stream().map(DTOMapper::toDeclarationDTO).collect(Collectors.toList());
+        return new PageDeclarationsDTO(dtos, dtos.size(), curseurSuivant, pageSuivante);
     }
 
-    public List<Declaration> listerDeclarationsSupprimees() {
-        List<Declaration> supprimees = declarationRepository.findBySupprimeTrue();
-        return supprimees != null ? supprimees : new ArrayList<>();
+    private int normaliserTaille(Integer taille) {
+        if (taille == null || taille <= 0) return TAILLE_PAGE_DEFAUT;
+        return Math.min(taille, TAILLE_PAGE_MAX);
     }
 
-    // === STATISTIQUES ===
-    public PosteStatsDTO getPosteStats() {
-        PosteStatsDTO stats = new PosteStatsDTO();
-        long totalDeclarations = declarationRepository.countBySupprimeFalse();
-        long declarationsValidees = declarationRepository.countByStatutAndSupprimeFalse(StatutDeclaration.VALIDEE);
-        long declarationsEnregistrees = declarationRepository.countByStatutAndSupprimeFalse(StatutDeclaration.ENREGISTREE);
-        long declarationsRejetees = declarationRepository.countByStatutAndSupprimeFalse(StatutDeclaration.REJETEE);
-        long declarationsBrouillons = declarationRepository.countByStatutAndSupprimeFalse(StatutDeclaration.BROUILLON);
-        long declarationsSupprimees = declarationRepository.countBySupprimeTrue();
-
-        long totalCalculated = declarationsValidees + declarationsEnregistrees + declarationsRejetees + declarationsBrouillons;
-        if (totalDeclarations != totalCalculated) totalDeclarations = totalCalculated;
+    /**
+     * Le curseur est opaque pour le client : "creeLe(ms):id" encodé en Base64 URL.
+     */
+    private static String encoderCurseur(Date creeLe, Long id) {
+        String brut = creeLe.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
 
-        stats.setTotalDeclarations(totalDeclarations);
-        stats.setDeclarationsValidees(declarationsValidees);
-        stats.setDeclarationsEnregistrees(declarationsEnregistrees);
-        stats.setDeclarationsRejetees(declarationsRejetees);
-        stats.setDeclarationsBrouillons(declarationsBrouillons);
-        stats.setDeclarationsSupprimees(declarationsSupprimees);
+    private static PositionCurseur decoderCurseur(String curseur) {
+        // Première page : position au-delà de toute déclaration existante (31/12/9999)
+        if (curseur == null || curseur.isBlank()) {
+            return new PositionCurseur(new Date(253402300799000L), Long.MAX_VALUE);
+        }
+        try {
+            String brut = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8);
+            String[] parties = brut.split(":");
+            return new PositionCurseur(new Date(Long.parseLong(parties[0])), Long.parseLong(parties[1]));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Curseur de pagination invalide");
+        }
+    }
 
-//        double tauxTraitement = totalDeclarations > 0 ? ((double) declarationsValidees / totalDeclarations) * 100 : 0;
-//        stats.setTauxTraitement(Math.round(tauxTraitement * 100.0) / 100.0);
+    private record PositionCurseur(Date creeLe, Long id) {}
 
-        return stats;
+    // === STATISTIQUES ===
+    /**
+     * Statistiques des déclarations d'un poste, ou de tous les postes si postePoliceId est null.
+     */
+    @Transactional(readOnly = true)
+    public PosteStatsDTO getPosteStats(Long postePoliceId) {
+        List<Object[]> groupes = postePoliceId == null
+                ? declarationRepository.compterParStatut()
+                : declarationRepository.compterParStatutPourPoste(postePoliceId);
+        return construireStats(groupes);
     }
 
+    @Transactional(readOnly = true)
     public PosteStatsDTO getUserStats(Long utilisateurId) {
+        return construireStats(declarationRepository.compterParStatutPourUtilisateur(utilisateurId));
+    }
+
+    // Répartit les lignes [statut, supprime, nombre] de l'agrégation dans le DTO
+    private PosteStatsDTO construireStats(List<Object[]> groupes) {
         PosteStatsDTO stats = new PosteStatsDTO();
-        long totalDeclarations = declarationRepository.countByUtilisateurIdAndSupprimeFalse(utilisateurId);
-        long declarationsValidees = declarationRepository.countByUtilisateurIdAndStatutAndSupprimeFalse(utilisateurId, StatutDeclaration.VALIDEE);
-        long declarationsEnregistrees = declarationRepository.countByUtilisateurIdAndStatutAndSupprimeFalse(utilisateurId, StatutDeclaration.ENREGISTREE);
-        long declarationsRejetees = declarationRepository.countByUtilisateurIdAndStatutAndSupprimeFalse(utilisateurId, StatutDeclaration.REJETEE);
-        long declarationsBrouillons = declarationRepository.countByUtilisateurIdAndStatutAndSupprimeFalse(utilisateurId, StatutDeclaration.BROUILLON);
-        long declarationsSupprimees = declarationRepository.countByUtilisateurIdAndSupprimeTrue(utilisateurId);
+        for (Object[] groupe : groupes) {
+            StatutDeclaration statut = (StatutDeclaration) groupe[0];
+            boolean supprime = (Boolean) groupe[1];
+            long nombre = ((Number) groupe[2]).longValue();
+
+            if (supprime) {
+                stats.setDeclarationsSupprimees(stats.getDeclarationsSupprimees() + nombre);
+                continue;
+            }
+            switch (statut) {
+                case VALIDEE -> stats.setDeclarationsValidees(nombre);
+                case ENREGISTREE -> stats.setDeclarationsEnregistrees(nombre);
+                case REJETEE -> stats.setDeclarationsRejetees(nombre);
+                case BROUILLON -> stats.setDeclarationsBrouillons(nombre);
+                default -> { } // SUPPRIME sans suppression logique : hors total, comme auparavant
+            }
+        }
 
+        long totalDeclarations = stats.getDeclarationsValidees() + stats.getDeclarationsEnregistrees()
+                + stats.getDeclarationsRejetees() + stats.getDeclarationsBrouillons();
         stats.setTotalDeclarations(totalDeclarations);
-        stats.setDeclarationsValidees(declarationsValidees);
-        stats.setDeclarationsEnregistrees(declarationsEnregistrees);
-        stats.setDeclarationsRejetees(declarationsRejetees);
-        stats.setDeclarationsBrouillons(declarationsBrouillons);
-        stats.setDeclarationsSupprimees(declarationsSupprimees);
-
-//        double tauxTraitement = totalDeclarations > 0 ? ((double) declarationsValidees / totalDeclarations) * 100 : 0;
-//        stats.setTauxTraitement(Math.round(tauxTraitement * 100.0) / 100.0);
 
+        double tauxTraitement = totalDeclarations > 0 ? ((double) stats.getDeclarationsValidees() / totalDeclarations) * 100 : 0;
+        stats.setTauxTraitement(Math.round(tauxTraitement * 100.0) / 100.0);
         return stats;
     }
 
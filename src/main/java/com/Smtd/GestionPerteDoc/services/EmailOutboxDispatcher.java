@@ -0,0 +1,306 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.entities.EmailSortant;
+import com.Smtd.GestionPerteDoc.enums.StatutEmail;
+import com.Smtd.GestionPerteDoc.enums.TypeEmail;
+import com.Smtd.GestionPerteDoc.repositories.DeclarationRepository;
+import com.Smtd.GestionPerteDoc.repositories.EmailSortantRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expédition en arrière-plan des emails de l'outbox.
+ *
+ * Chaque passage réserve un lot (SELECT ... FOR UPDATE SKIP LOCKED puis bail), envoie
+ * les messages hors transaction, puis enregistre le résultat. Un échec est retenté avec
+ * un délai exponentiel ; au-delà du nombre maximal de tentatives l'email passe en ECHEC.
+ * Les connexions JDBC ne sont tenues que le temps des courtes transactions, jamais
+ * pendant l'échange SMTP.
+ * Quand le serveur SMTP est injoignable (disjoncteur ouvert), le passage s'arrête et les
+ * emails restants du lot sont rendus sans consommer de tentative.
+ * Les notifications en attente d'un même déclarant (récépissé, validation) partent
+ * ensemble dans un seul email récapitulatif.
+ */
+@Component
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private static final long DELAI_MAX_MS = 3_600_000L;
+
+    private static final List<String> TYPES_NOTIFICATION_DECLARANT = Arrays.stream(TypeEmail.values())
+            .filter(TypeEmail::isNotificationDeclarant).map(TypeEmail::name).toList();
+
+    @FunctionalInterface
+    private interface EnvoiSmtp {
+        void envoyer() throws Exception;
+    }
+
+    private final EmailSortantRepository emailSortantRepository;
+    private final DeclarationRepository declarationRepository;
+    private final EmailService emailService;
+    private final TransportSmtpService transportSmtp;
+    private final CacheRecuService cacheRecuService;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate transactionLecture;
+
+    private final int tailleLot;
+    private final int maxTentatives;
+    private final long delaiBaseMs;
+    private final long bailMs;
+    private final long fenetreRegroupementMs;
+    private final MeterRegistry meterRegistry;
+
+    // Compteurs depuis le démarrage du noeud
+    private final AtomicLong envoyes = new AtomicLong();
+    private final AtomicLong echecsTemporaires = new AtomicLong();
+    private final AtomicLong echecsDefinitifs = new AtomicLong();
+    // Notifications envoyées dans le récapitulatif d'une autre (messages SMTP évités)
+    private final AtomicLong regroupes = new AtomicLong();
+
+    public EmailOutboxDispatcher(EmailSortantRepository emailSortantRepository,
+                                 DeclarationRepository declarationRepository,
+                                 EmailService emailService,
+                                 TransportSmtpService transportSmtp,
+                                 CacheRecuService cacheRecuService,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${gestionpertedoc.app.outbox.tailleLot:20}") int tailleLot,
+                                 @Value("${gestionpertedoc.app.outbox.maxTentatives:6}") int maxTentatives,
+                                 @Value("${gestionpertedoc.app.outbox.delaiBaseMs:30000}") long delaiBaseMs,
+                                 @Value("${gestionpertedoc.app.outbox.bailMs:300000}") long bailMs,
+                                 @Value("${gestionpertedoc.app.outbox.fenetreRegroupementMs:0}") long fenetreRegroupementMs) {
+        if (fenetreRegroupementMs >= bailMs) {
+            throw new IllegalStateException("La fenêtre de regroupement des emails doit être plus courte que le bail");
+        }
+        this.emailSortantRepository = emailSortantRepository;
+        this.declarationRepository = declarationRepository;
+        this.emailService = emailService;
+        this.transportSmtp = transportSmtp;
+        this.cacheRecuService = cacheRecuService;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.tailleLot = tailleLot;
+        this.maxTentatives = maxTentatives;
+        this.delaiBaseMs = delaiBaseMs;
+        this.bailMs = bailMs;
+        this.fenetreRegroupementMs = fenetreRegroupementMs;
+        this.meterRegistry = meterRegistry;
+
+        lierCompteur("envoye", envoyes);
+        lierCompteur("echec_temporaire", echecsTemporaires);
+        lierCompteur("echec_definitif", echecsDefinitifs);
+        lierCompteur("regroupe", regroupes);
+    }
+
+    @Scheduled(fixedDelayString = "${gestionpertedoc.app.outbox.intervalleMs:2000}")
+    public void expedier() {
+        if (!transportSmtp.disponible()) return;
+        List<Long> ids = reserverLot();
+        for (int i = 0; i < ids.size(); i++) {
+            if (!transportSmtp.disponible()) {
+                rendreLot(ids.subList(i, ids.size()));
+                return;
+            }
+            expedierEmail(ids.get(i), ids);
+        }
+    }
+
+    private List<Long> reserverLot() {
+        List<Long> ids = transaction.execute(status -> {
+            Date maintenant = new Date();
+            List<Long> lot = emailSortantRepository.verrouillerLot(maintenant, tailleLot);
+            if (!lot.isEmpty()) {
+                emailSortantRepository.prolongerBail(lot, new Date(maintenant.getTime() + bailMs));
+            }
+            return lot;
+        });
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    // Fin du bail : les emails redeviennent éligibles au prochain passage
+    private void rendreLot(List<Long> ids) {
+        transaction.executeWithoutResult(status -> emailSortantRepository.prolongerBail(ids, new Date()));
+        log.warn("Serveur SMTP indisponible, {} emails remis en attente", ids.size());
+    }
+
+    private void expedierEmail(Long id, List<Long> lot) {
+        EmailSortant email = transactionLecture.execute(status -> emailSortantRepository.findById(id).orElse(null));
+        if (email == null || email.getStatut() != StatutEmail.EN_ATTENTE) return;
+
+        List<EmailSortant> groupe = email.getType().isNotificationDeclarant() && fenetreRegroupementMs > 0
+                ? reserverGroupe(email, lot) : List.of(email);
+        List<Long> idsGroupe = groupe.stream().map(EmailSortant::getId).toList();
+        try {
+            if (groupe.size() > 1) {
+                envoyerMesure("RECAPITULATIF", () -> envoyerRecapitulatif(groupe));
+            } else {
+                envoyerMesure(email.getType().name(), () -> envoyer(email));
+            }
+            transaction.executeWithoutResult(status -> idsGroupe.forEach(this::marquerEnvoye));
+            envoyes.addAndGet(groupe.size());
+            regroupes.addAndGet(groupe.size() - 1);
+        } catch (Exception e) {
+            log.warn("Échec d'envoi des emails {} ({}) : {}", idsGroupe, email.getType(), e.getMessage());
+            transaction.executeWithoutResult(status -> idsGroupe.forEach(i -> marquerEchec(i, e)));
+        }
+    }
+
+    // Réserve les notifications en attente du même destinataire (bail prolongé), dans
+    // l'ordre de création. Si l'email n'a pas pu être verrouillé, il part seul.
+    private List<EmailSortant> reserverGroupe(EmailSortant email, List<Long> lot) {
+        List<EmailSortant> groupe = transaction.execute(status -> {
+            Date maintenant = new Date();
+            List<Long> ids = emailSortantRepository.verrouillerNotificationsDeclarant(email.getDestinataire(),
+                    TYPES_NOTIFICATION_DECLARANT, lot, new Date(maintenant.getTime() + fenetreRegroupementMs));
+            if (!ids.contains(email.getId())) return List.<EmailSortant>of();
+            emailSortantRepository.prolongerBail(ids, new Date(maintenant.getTime() + bailMs));
+            List<EmailSortant> emails = new ArrayList<>(emailSortantRepository.findAllById(ids));
+            emails.sort(Comparator.comparing(EmailSortant::getCreeLe).thenComparing(EmailSortant::getId));
+            return emails;
+        });
+        return groupe == null || groupe.isEmpty() ? List.of(email) : groupe;
+    }
+
+    // Durée de l'envoi (génération du récépissé comprise) par type d'email et résultat
+    private void envoyerMesure(String type, EnvoiSmtp envoi) throws Exception {
+        Timer.Sample chrono = Timer.start(meterRegistry);
+        String resultat = "erreur";
+        try {
+            envoi.envoyer();
+            resultat = "succes";
+        } finally {
+            chrono.stop(meterRegistry.timer("gestionpertedoc.email.envoi",
+                    "type", type, MetriquesConfig.TAG_RESULTAT, resultat));
+        }
+    }
+
+    // Envoi SMTP, hors transaction
+    private void envoyer(EmailSortant email) throws Exception {
+        // Secret indéchiffrable (voir SecretOutboxConverter) : échec, jamais un lien vide
+        if (!email.getType().isNotificationDeclarant() && email.getJeton() == null
+                || email.getType() == TypeEmail.MOT_DE_PASSE_TEMPORAIRE && email.getMotDePasseTemp() == null) {
+            throw new IllegalStateException("Secret de l'email " + email.getId() + " illisible");
+        }
+        switch (email.getType()) {
+            case RECU_DECLARATION -> emailService.envoyerEmailAvecPdf(
+                    email.getDestinataire(), genererRecu(email.getDeclarationId()), email.getNumeroReference());
+            case DECLARATION_VALIDEE -> emailService.envoyerEmailDeclarationValidee(
+                    email.getDestinataire(), email.getNumeroReference());
+            case MOT_DE_PASSE_TEMPORAIRE -> emailService.envoyerEmailMotDePasseTemporaire(
+                    email.getDestinataire(), email.getMotDePasseTemp(), email.getJeton());
+            case MOT_DE_PASSE_OUBLIE -> emailService.envoyerEmailMotDePasseOublie(
+                    email.getDestinataire(), email.getJeton());
+        }
+    }
+
+    // Un seul email pour plusieurs notifications ; un récépissé par déclaration
+    private void envoyerRecapitulatif(List<EmailSortant> groupe) throws Exception {
+        Set<String> evenements = new LinkedHashSet<>();
+        Map<String, byte[]> recus = new LinkedHashMap<>();
+        for (EmailSortant email : groupe) {
+            String reference = email.getNumeroReference();
+            switch (email.getType()) {
+                case RECU_DECLARATION -> {
+                    evenements.add("Déclaration " + reference + " enregistrée (récépissé joint)");
+                    if (!recus.containsKey(reference)) recus.put(reference, genererRecu(email.getDeclarationId()));
+                }
+                case DECLARATION_VALIDEE -> evenements.add("Déclaration " + reference
+                        + " validée : vous pouvez venir récupérer votre document");
+                default -> throw new IllegalStateException("Email non regroupable : " + email.getType());
+            }
+        }
+        emailService.envoyerRecapitulatif(groupe.get(0).getDestinataire(), List.copyOf(evenements), recus);
+    }
+
+    // Récépissé en général déjà pré-rendu après la création : lu depuis le cache disque.
+    // La transaction ne couvre que la lecture de la déclaration, pas le rendu.
+    private byte[] genererRecu(Long declarationId) throws IOException {
+        Declaration declaration = transactionLecture.execute(status ->
+                declarationRepository.findByIdWithDetails(declarationId)
+                        .orElseThrow(() -> new RuntimeException("Déclaration introuvable : " + declarationId)));
+        return Files.readAllBytes(cacheRecuService.obtenir(declaration).fichier());
+    }
+
+    private void marquerEnvoye(Long id) {
+        emailSortantRepository.findById(id).ifPresent(email -> {
+            email.setStatut(StatutEmail.ENVOYE);
+            email.setTentatives(email.getTentatives() + 1);
+            email.setEnvoyeLe(new Date());
+            email.setDerniereErreur(null);
+            email.setJeton(null);
+            email.setMotDePasseTemp(null);
+        });
+    }
+
+    private void marquerEchec(Long id, Exception erreur) {
+        emailSortantRepository.findById(id).ifPresent(email -> {
+            int tentatives = email.getTentatives() + 1;
+            email.setTentatives(tentatives);
+            email.setDerniereErreur(tronquer(erreur.getClass().getSimpleName() + ": " + erreur.getMessage()));
+
+            if (tentatives >= maxTentatives) {
+                email.setStatut(StatutEmail.ECHEC);
+                email.setJeton(null);
+                email.setMotDePasseTemp(null);
+                echecsDefinitifs.incrementAndGet();
+                log.error("Email {} abandonné après {} tentatives", id, tentatives);
+            } else {
+                email.setProchaineTentative(new Date(System.currentTimeMillis() + delai(tentatives)));
+                echecsTemporaires.incrementAndGet();
+            }
+        });
+    }
+
+    // Délai exponentiel : base, 2 x base, 4 x base, ... plafonné à une heure
+    private long delai(int tentatives) {
+        long delai = delaiBaseMs << Math.min(tentatives - 1, 20);
+        return Math.min(delai, DELAI_MAX_MS);
+    }
+
+    private static String tronquer(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    // ---------------- Métriques ----------------
+    private void lierCompteur(String resultat, AtomicLong compteur) {
+        FunctionCounter.builder("gestionpertedoc.email.outbox", compteur, AtomicLong::get)
+                .description("Emails traités par l'outbox depuis le démarrage")
+                .tag(MetriquesConfig.TAG_RESULTAT, resultat)
+                .register(meterRegistry);
+    }
+
+    public Map<String, Long> compteurs() {
+        Map<String, Long> compteurs = new LinkedHashMap<>();
+        compteurs.put("envoyes", envoyes.get());
+        compteurs.put("echecsTemporaires", echecsTemporaires.get());
+        compteurs.put("echecsDefinitifs", echecsDefinitifs.get());
+        compteurs.put("regroupes", regroupes.get());
+        return compteurs;
+    }
+}
@@ -0,0 +1,99 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.entities.EmailSortant;
+import com.Smtd.GestionPerteDoc.enums.StatutEmail;
+import com.Smtd.GestionPerteDoc.enums.TypeEmail;
+import com.Smtd.GestionPerteDoc.repositories.EmailSortantRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mise en file des emails (outbox). Chaque méthode écrit une ligne dans la transaction
+ * de l'appelant : l'email n'existe que si l'opération métier est validée, et aucune
+ * connexion SMTP n'est ouverte pendant la requête HTTP.
+ * Les notifications au déclarant attendent la fenêtre de regroupement avant d'être
+ * expédiées : celles qui arrivent entre-temps partent dans le même message.
+ */
+@Service
+@Slf4j
+@Transactional
+public class EmailOutboxService {
+
+    private final EmailSortantRepository emailSortantRepository;
+    private final long fenetreRegroupementMs;
+
+    public EmailOutboxService(EmailSortantRepository emailSortantRepository,
+                              @Value("${gestionpertedoc.app.outbox.fenetreRegroupementMs:0}") long fenetreRegroupementMs) {
+        this.emailSortantRepository = emailSortantRepository;
+        this.fenetreRegroupementMs = fenetreRegroupementMs;
+    }
+
+    // ---------------- Mise en file ----------------
+    public void planifierRecuDeclaration(Declaration declaration) {
+        EmailSortant email = nouvelEmail(TypeEmail.RECU_DECLARATION, declaration.getDeclarant().getEmail());
+        if (email == null) return;
+        email.setDeclarationId(declaration.getId());
+        email.setNumeroReference(declaration.getNumeroReference());
+        emailSortantRepository.save(email);
+    }
+
+    public void planifierDeclarationValidee(String destinataire, String numeroReference) {
+        EmailSortant email = nouvelEmail(TypeEmail.DECLARATION_VALIDEE, destinataire);
+        if (email == null) return;
+        email.setNumeroReference(numeroReference);
+        emailSortantRepository.save(email);
+    }
+
+    public void planifierMotDePasseTemporaire(String destinataire, String motDePasseTemp, String resetToken) {
+        EmailSortant email = nouvelEmail(TypeEmail.MOT_DE_PASSE_TEMPORAIRE, destinataire);
+        if (email == null) return;
+        email.setMotDePasseTemp(motDePasseTemp);
+        email.setJeton(resetToken);
+        emailSortantRepository.save(email);
+    }
+
+    public void planifierMotDePasseOublie(String destinataire, String resetToken) {
+        EmailSortant email = nouvelEmail(TypeEmail.MOT_DE_PASSE_OUBLIE, destinataire);
+        if (email == null) return;
+        email.setJeton(resetToken);
+        emailSortantRepository.save(email);
+    }
+
+    // ---------------- Métriques ----------------
+    @Transactional(readOnly = true)
+    public Map<String, Long> compterParStatut() {
+        Map<String, Long> compteurs = new LinkedHashMap<>();
+        for (StatutEmail statut : StatutEmail.values()) {
+            compteurs.put(statut.name(), 0L);
+        }
+        for (Object[] ligne : emailSortantRepository.compterParStatut()) {
+            compteurs.put(((StatutEmail) ligne[0]).name(), (Long) ligne[1]);
+        }
+        return compteurs;
+    }
+
+    private EmailSortant nouvelEmail(TypeEmail type, String destinataire) {
+        if (destinataire == null || destinataire.isBlank()) {
+            log.debug("Email {} ignoré : aucun destinataire", type);
+            return null;
+        }
+        Date maintenant = new Date();
+        EmailSortant email = new EmailSortant();
+        email.setType(type);
+        email.setDestinataire(destinataire.trim());
+        email.setStatut(StatutEmail.EN_ATTENTE);
+        email.setCreeLe(maintenant);
+        email.setProchaineTentative(type.isNotificationDeclarant()
+                ? new Date(maintenant.getTime() + fenetreRegroupementMs) : maintenant);
+        return email;
+    }
+}
@@ -3,18 +3,21 @@ package com.Smtd.GestionPerteDoc.services;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.ByteArrayResource;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    // Connexions SMTP réutilisées, protégées par un disjoncteur
+    private final TransportSmtpService transportSmtp;
     // Envoi d'email avec PDF en pièce jointe
     public void envoyerEmailAvecPdf(String destinataire, byte[] pdfBytes, String numeroReference) throws Exception {
-        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessage message = transportSmtp.creerMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true);
 
         helper.setTo(destinataire);
@@ -23,12 +26,40 @@ public class EmailService {
 
         helper.addAttachment("Declaration-" + numeroReference + ".pdf", new ByteArrayResource(pdfBytes));
 
-        mailSender.send(message);
+        transportSmtp.envoyer(message);
+    }
+
+    // Récapitulatif : notifications d'un même déclarant regroupées en un seul email,
+    // avec les récépissés (numéro de référence -> PDF)
+    public void envoyerRecapitulatif(String destinataire, List<String> evenements, Map<String, byte[]> recus) throws Exception {
+        MimeMessage message = transportSmtp.creerMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, !recus.isEmpty());
+
+        helper.setTo(destinataire);
+        helper.setSubject("Suivi de vos déclarations");
+
+        StringBuilder texte = new StringBuilder("Bonjour,\n\nVoici le suivi de vos déclarations :\n");
+        for (String evenement : evenements) {
+            texte.append("- ").append(evenement).append("\n");
+        }
+        if (!recus.isEmpty()) {
+            texte.append("\nVous trouverez ci-joint ")
+                 .append(recus.size() > 1 ? "vos récépissés" : "votre récépissé")
+                 .append(" au format PDF.\n");
+        }
+        texte.append("\nCordialement,\nPoste de Police");
+        helper.setText(texte.toString(), false);
+
+        for (Map.Entry<String, byte[]> recu : recus.entrySet()) {
+            helper.addAttachment("Declaration-" + recu.getKey() + ".pdf", new ByteArrayResource(recu.getValue()));
+        }
+
+        transportSmtp.envoyer(message);
     }
 
     // Envoi d'email avec mot de passe temporaire
     public void envoyerEmailMotDePasseTemporaire(String destinataire, String motDePasseTemp, String resetToken) throws Exception {
-        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessage message = transportSmtp.creerMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true);
 
         helper.setTo(destinataire);
@@ -41,10 +72,10 @@ public class EmailService {
                        "Cliquez sur ce lien pour activer votre compte et changer votre mot de passe : " + lienReset + "\n\n" +
                        "Cordialement,\nPoste de Police", false);
 
-        mailSender.send(message);
+        transportSmtp.envoyer(message);
     }
     public void envoyerEmailMotDePasseOublie(String destinataire, String resetToken) throws Exception {
-        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessage message = transportSmtp.creerMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true);
 
         helper.setTo(destinataire);
@@ -56,11 +87,11 @@ public class EmailService {
                        "Veuillez cliquer sur ce lien pour réinitialiser votre mot de passe : " + lienReset + "\n\n" +
                        "Cordialement,\nPoste de Police", false);
 
-        mailSender.send(message);
+        transportSmtp.envoyer(message);
     }
 
     public void envoyerEmailDeclarationValidee(String destinataire, String numeroReference) throws Exception {
-        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessage message = transportSmtp.creerMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true);
         helper.setTo(destinataire);
         helper.setSubject("Votre déclaration a été validée");
@@ -73,7 +104,7 @@ public class EmailService {
                        "Vous pouvez venir récupérer votre document  " +
                        "\nCordialement, \nPoste de Police", false);
 
-        mailSender.send(message);
+        transportSmtp.envoyer(message);
     }
 
 }
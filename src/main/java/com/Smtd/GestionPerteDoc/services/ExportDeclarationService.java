@@ -0,0 +1,282 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.dtos.DTOMapper;
+import com.Smtd.GestionPerteDoc.dtos.DeclarationLigneDTO;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.repositories.DeclarationRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export des déclarations actives en flux (NDJSON ou CSV), et des récépissés d'un poste
+ * en archive ZIP.
+ * Les lignes sont lues par lots depuis un curseur serveur et écrites au fil de l'eau :
+ * la mémoire utilisée ne dépend pas du nombre de déclarations.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportDeclarationService {
+
+    // Nombre de lignes écrites entre deux flush vers le client
+    private static final int TAILLE_LOT = 500;
+
+    private static final String[] ENTETES_CSV = {
+            "id", "numeroReference", "typeDocument", "numeroDocument", "datePerte", "lieuPerte",
+            "statut", "dateDeclaration", "declarantNom", "declarantPrenom", "declarantTelephone",
+            "declarantEmail", "agentMatricule", "agentNom", "agentPrenom", "creeLe"
+    };
+
+    // Rendu des récépissés : un thread par coeur, pool partagé entre les exports
+    private static final int THREADS_RECUS = Runtime.getRuntime().availableProcessors();
+    // Récépissés en cours de rendu par export : borne la mémoire et la file du pool
+    private static final int FENETRE_RECUS = 2 * THREADS_RECUS;
+
+    private final DeclarationRepository declarationRepository;
+    private final ObjectMapper objectMapper;
+    private final CacheRecuService cacheRecuService;
+    private final EntityManager entityManager;
+
+    private final ExecutorService executeurRecus = Executors.newFixedThreadPool(THREADS_RECUS, new ThreadFactory() {
+        private final AtomicInteger numero = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable tache) {
+            Thread t = new Thread(tache, "export-recus-" + numero.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    // Récépissé rendu et déjà ouvert (ou en erreur) : une éviction avant la copie ne le perd plus
+    private record RecuExporte(String numeroReference, CacheRecuService.RecuOuvert ouvert, Exception erreur) {}
+
+    // ---------------- NDJSON ----------------
+    @Transactional(readOnly = true)
+    public long exporterNdjson(OutputStream sortie) throws IOException {
+        long total = 0;
+        try (Stream<DeclarationLigneDTO> lignes = declarationRepository.streamLignesActives();
+             SequenceWriter writer = objectMapper.writer()
+                     .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                     .withRootValueSeparator("\n")
+                     .writeValues(sortie)) {
+
+            Iterator<DeclarationLigneDTO> it = lignes.iterator();
+            while (it.hasNext()) {
+                writer.write(DTOMapper.toDeclarationDTO(it.next()));
+                if (++total % TAILLE_LOT == 0) writer.flush();
+            }
+        }
+        // Le séparateur n'est écrit qu'entre deux valeurs : terminer la dernière ligne
+        if (total > 0) sortie.write('\n');
+        sortie.flush();
+        log.info("Export NDJSON terminé : {} déclarations", total);
+        return total;
+    }
+
+    // ---------------- CSV ----------------
+    @Transactional(readOnly = true)
+    public long exporterCsv(OutputStream sortie) throws IOException {
+        long total = 0;
+        SimpleDateFormat formatJour = new SimpleDateFormat("yyyy-MM-dd");
+        SimpleDateFormat formatHorodatage = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(sortie, StandardCharsets.UTF_8));
+        ecrireLigneCsv(writer, ENTETES_CSV);
+
+        try (Stream<DeclarationLigneDTO> lignes = declarationRepository.streamLignesActives()) {
+            Iterator<DeclarationLigneDTO> it = lignes.iterator();
+            while (it.hasNext()) {
+                DeclarationLigneDTO l = it.next();
+                ecrireLigneCsv(writer, new String[] {
+                        String.valueOf(l.id()),
+                        l.numeroReference(),
+                        l.typeDocumentLibelle(),
+                        l.numeroDocument(),
+                        formater(formatJour, l.datePerte()),
+                        l.lieuPerte(),
+                        l.statut() != null ? l.statut().name() : null,
+                        formater(formatHorodatage, l.dateDeclaration()),
+                        l.declarantNom(),
+                        l.declarantPrenom(),
+                        l.declarantTelephone(),
+                        l.declarantEmail(),
+                        l.utilisateurMatricule(),
+                        l.utilisateurNom(),
+                        l.utilisateurPrenom(),
+                        formater(formatHorodatage, l.creeLe())
+                });
+                if (++total % TAILLE_LOT == 0) writer.flush();
+            }
+        }
+        writer.flush();
+        log.info("Export CSV terminé : {} déclarations", total);
+        return total;
+    }
+
+    // ---------------- Récépissés (ZIP) ----------------
+    /**
+     * Écrit dans une archive ZIP les récépissés des déclarations actives du poste créées
+     * sur la période [debut, fin[. Les rendus tournent en parallèle, au plus FENETRE_RECUS
+     * à la fois ; chaque récépissé est ajouté à l'archive dès qu'il est prêt.
+     * Les récépissés en erreur sont listés dans erreurs.txt. Retourne le nombre de récépissés écrits.
+     */
+    @Transactional(readOnly = true)
+    public int exporterRecusZip(Long postePoliceId, Date debut, Date fin, OutputStream sortie) throws IOException {
+        CompletionService<RecuExporte> rendus = new ExecutorCompletionService<>(executeurRecus);
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(sortie, 64 * 1024));
+        // Les PDF sont déjà compressés : archivage sans recompression
+        zip.setLevel(Deflater.NO_COMPRESSION);
+
+        List<String> erreurs = new ArrayList<>();
+        int total = 0;
+        int enCours = 0;
+        long lus = 0;
+        try {
+            try (Stream<Declaration> declarations = declarationRepository.streamPourRecus(postePoliceId, debut, fin)) {
+                Iterator<Declaration> it = declarations.iterator();
+                while (it.hasNext()) {
+                    Declaration declaration = it.next();
+                    rendus.submit(() -> rendreRecu(declaration));
+                    enCours++;
+                    // Les entités déjà lues (déclarant, type chargés) restent utilisables détachées
+                    if (++lus % TAILLE_LOT == 0) entityManager.clear();
+
+                    if (enCours >= FENETRE_RECUS) {
+                        enCours--;
+                        total += ajouterRecu(zip, prochainRecu(rendus), erreurs);
+                    }
+                }
+            }
+            while (enCours > 0) {
+                enCours--;
+                total += ajouterRecu(zip, prochainRecu(rendus), erreurs);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Export interrompu (client déconnecté...) : fermer les récépissés déjà ouverts
+            fermerRestants(rendus, enCours);
+            throw e;
+        }
+
+        if (!erreurs.isEmpty()) {
+            zip.putNextEntry(new ZipEntry("erreurs.txt"));
+            zip.write(String.join("\r\n", erreurs).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+        log.info("Export ZIP des récépissés du poste {} : {} récépissés, {} erreurs", postePoliceId, total, erreurs.size());
+        return total;
+    }
+
+    // Ouvert dans le thread de rendu : si le fichier disparaît avant, ouvrir() le rend de nouveau
+    private RecuExporte rendreRecu(Declaration declaration) {
+        try {
+            return new RecuExporte(declaration.getNumeroReference(), cacheRecuService.ouvrir(declaration), null);
+        } catch (Exception e) {
+            return new RecuExporte(declaration.getNumeroReference(), null, e);
+        }
+    }
+
+    private static RecuExporte prochainRecu(CompletionService<RecuExporte> rendus) throws IOException {
+        try {
+            return rendus.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export des récépissés interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // L'entrée n'est créée qu'une fois le récépissé ouvert : jamais d'entrée vide dans l'archive
+    private static int ajouterRecu(ZipOutputStream zip, RecuExporte recu, List<String> erreurs) throws IOException {
+        if (recu.erreur() != null) {
+            erreurs.add(recu.numeroReference() + " : " + recu.erreur().getMessage());
+            return 0;
+        }
+        try (CacheRecuService.RecuOuvert ouvert = recu.ouvert()) {
+            zip.putNextEntry(new ZipEntry(recu.numeroReference() + ".pdf"));
+            Channels.newInputStream(ouvert.canal()).transferTo(zip);
+            zip.closeEntry();
+            return 1;
+        }
+    }
+
+    private static void fermerRestants(CompletionService<RecuExporte> rendus, int enCours) {
+        for (; enCours > 0; enCours--) {
+            try {
+                RecuExporte recu = prochainRecu(rendus);
+                if (recu.ouvert() != null) recu.ouvert().close();
+            } catch (IOException e) {
+                log.debug("Fermeture d'un récépissé après interruption de l'export : {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void arreter() {
+        executeurRecus.shutdownNow();
+    }
+
+    // ---------------- Utilitaires ----------------
+    private static String formater(SimpleDateFormat format, Date date) {
+        return date != null ? format.format(date) : null;
+    }
+
+    private static void ecrireLigneCsv(Writer writer, String[] valeurs) throws IOException {
+        for (int i = 0; i < valeurs.length; i++) {
+            if (i > 0) writer.write(',');
+            ecrireChampCsv(writer, valeurs[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    // Échappement RFC 4180 : guillemets doublés, champ entre guillemets si nécessaire
+    private static void ecrireChampCsv(Writer writer, String valeur) throws IOException {
+        if (valeur == null || valeur.isEmpty()) return;
+        boolean aEchapper = valeur.indexOf(',') >= 0 || valeur.indexOf('"') >= 0
+                || valeur.indexOf('\n') >= 0 || valeur.indexOf('\r') >= 0;
+        if (!aEchapper) {
+            writer.write(valeur);
+            return;
+        }
+        writer.write('"');
+        writer.write(valeur.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,286 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.entities.Declarant;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.ListItem;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Text;
+import com.itextpdf.layout.properties.HorizontalAlignment;
+import com.itextpdf.layout.properties.TextAlignment;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gabarit de récépissé compilé une seule fois à partir du modèle Word.
+ *
+ * La compilation découpe chaque run en fragments littéraux et en champs ({{nom}}, ...),
+ * fige la mise en forme et regroupe les paragraphes numérotés par liste. Le rendu d'une
+ * déclaration se fait ensuite en un seul passage, sans relire le .docx.
+ * Une instance est immuable et peut être partagée entre threads.
+ *
+ * La version d'un récépissé (empreinte du modèle, des valeurs des champs et du jeton
+ * signé du QR code) change dès que son contenu change : elle sert de clé au cache disque
+ * des récépissés.
+ */
+final class GabaritRecu {
+
+    // ---------------- Champs dynamiques du modèle ----------------
+    enum Champ {
+        NUMERO_REFERENCE("{{numero_reference}}"),
+        NOM("{{nom}}"),
+        PRENOM("{{prenom}}"),
+        ADRESSE("{{adresse}}"),
+        TELEPHONE("{{telephone}}"),
+        EMAIL("{{email}}"),
+        TYPE_DOCUMENT("{{type_document}}"),
+        NUMERO_DOCUMENT("{{numero_document}}"),
+        DATE_PERTE("{{date_perte}}"),
+        DATE_JOUR("{{date_jour}}");
+
+        final String marqueur;
+
+        Champ(String marqueur) {
+            this.marqueur = marqueur;
+        }
+
+        private static final Champ[] VALEURS = values();
+    }
+
+    // Un fragment est soit un texte fixe (champ == null), soit un champ à remplacer
+    private record Fragment(String texte, Champ champ) {}
+
+    private record Run(List<Fragment> fragments, boolean gras, boolean italique, boolean barre, boolean couleur) {}
+
+    private sealed interface Bloc permits BlocParagraphe, BlocListe {}
+
+    private record BlocParagraphe(TextAlignment alignement, float margeHaut, float margeBas, List<Run> runs) implements Bloc {}
+
+    private record BlocListe(List<List<Fragment>> elements) implements Bloc {}
+
+    // Côté du QR code imprimé, en points
+    private static final float TAILLE_QR = 90f;
+
+    private final List<Bloc> blocs;
+    private final byte[] empreinteModele;
+
+    private GabaritRecu(List<Bloc> blocs, byte[] empreinteModele) {
+        this.blocs = blocs;
+        this.empreinteModele = empreinteModele;
+    }
+
+    // ---------------- Compilation ----------------
+    static GabaritRecu compiler(InputStream modele) throws IOException {
+        byte[] octets = modele.readAllBytes();
+        try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(octets))) {
+            List<Bloc> blocs = new ArrayList<>();
+
+            // Paragraphes numérotés regroupés par liste, en un seul parcours du document
+            Map<BigInteger, List<List<Fragment>>> listes = new LinkedHashMap<>();
+
+            for (IBodyElement element : doc.getBodyElements()) {
+                if (!(element instanceof XWPFParagraph para)) continue;
+
+                BigInteger numId = para.getNumID();
+                if (numId != null) {
+                    List<List<Fragment>> elements = listes.get(numId);
+                    if (elements == null) {
+                        // La liste est émise à la position de son premier élément
+                        elements = new ArrayList<>();
+                        listes.put(numId, elements);
+                        blocs.add(new BlocListe(elements));
+                    }
+                    elements.add(compilerTexteParagraphe(para));
+                    continue;
+                }
+
+                List<Run> runs = new ArrayList<>();
+                for (XWPFRun run : para.getRuns()) {
+                    String texte = run.text();
+                    if (texte == null || texte.isEmpty()) continue;
+                    runs.add(new Run(List.copyOf(decouper(texte)),
+                            run.isBold(), run.isItalic(), run.isStrike(), run.getColor() != null));
+                }
+                blocs.add(new BlocParagraphe(alignement(para), para.getSpacingBefore(), para.getSpacingAfter(),
+                        List.copyOf(runs)));
+            }
+
+            // Figer les listes une fois tous leurs éléments collectés
+            List<Bloc> fige = new ArrayList<>(blocs.size());
+            for (Bloc bloc : blocs) {
+                fige.add(bloc instanceof BlocListe liste ? new BlocListe(List.copyOf(liste.elements())) : bloc);
+            }
+            return new GabaritRecu(List.copyOf(fige), sha256().digest(octets));
+        }
+    }
+
+    private static List<Fragment> compilerTexteParagraphe(XWPFParagraph para) {
+        List<Fragment> fragments = new ArrayList<>();
+        for (XWPFRun run : para.getRuns()) {
+            String texte = run.text();
+            if (texte != null) fragments.addAll(decouper(texte));
+        }
+        return List.copyOf(fragments);
+    }
+
+    // Découpe un texte en fragments littéraux et champs, dans l'ordre d'apparition
+    private static List<Fragment> decouper(String texte) {
+        List<Fragment> fragments = new ArrayList<>();
+        int debut = 0;
+        while (debut < texte.length()) {
+            int position = -1;
+            Champ trouve = null;
+            for (Champ champ : Champ.VALEURS) {
+                int p = texte.indexOf(champ.marqueur, debut);
+                if (p >= 0 && (position < 0 || p < position)) {
+                    position = p;
+                    trouve = champ;
+                }
+            }
+            if (trouve == null) {
+                fragments.add(new Fragment(texte.substring(debut), null));
+                break;
+            }
+            if (position > debut) fragments.add(new Fragment(texte.substring(debut, position), null));
+            fragments.add(new Fragment(null, trouve));
+            debut = position + trouve.marqueur.length();
+        }
+        return fragments;
+    }
+
+    private static TextAlignment alignement(XWPFParagraph para) {
+        return switch (para.getAlignment()) {
+            case CENTER -> TextAlignment.CENTER;
+            case RIGHT -> TextAlignment.RIGHT;
+            case BOTH -> TextAlignment.JUSTIFIED;
+            default -> TextAlignment.LEFT;
+        };
+    }
+
+    // ---------------- Version ----------------
+    // Empreinte hexadécimale (128 bits) du modèle, des champs rendus et du jeton du QR code
+    String version(Declaration declaration, String jetonQr) {
+        MessageDigest digest = sha256();
+        digest.update(empreinteModele);
+        if (jetonQr != null) digest.update(jetonQr.getBytes(StandardCharsets.UTF_8));
+        for (String valeur : valeursChamps(declaration)) {
+            digest.update(valeur.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ---------------- Rendu ----------------
+    void rendre(Declaration declaration, Document document, PdfFont police, byte[] qrCode) {
+        String[] valeurs = valeursChamps(declaration);
+
+        for (Bloc bloc : blocs) {
+            if (bloc instanceof BlocParagraphe p) {
+                Paragraph pdfPara = new Paragraph()
+                        .setTextAlignment(p.alignement())
+                        .setMarginTop(p.margeHaut())
+                        .setMarginBottom(p.margeBas());
+
+                for (Run run : p.runs()) {
+                    Text pdfText = new Text(assembler(run.fragments(), valeurs))
+                            .setFont(police)
+                            .setFontSize(12);
+                    if (run.gras()) pdfText.setBold();
+                    if (run.italique()) pdfText.setItalic();
+                    if (run.barre()) pdfText.setStrokeWidth(0.5f);
+                    if (run.couleur()) pdfText.setFontColor(ColorConstants.BLACK); // simplifié
+                    pdfPara.add(pdfText);
+                }
+                document.add(pdfPara);
+            } else if (bloc instanceof BlocListe l) {
+                com.itextpdf.layout.element.List pdfList = new com.itextpdf.layout.element.List()
+                        .setSymbolIndent(12)
+                        .setListSymbol("•"); // puce par défaut
+                for (List<Fragment> element : l.elements()) {
+                    pdfList.add(new ListItem(assembler(element, valeurs)));
+                }
+                document.add(pdfList);
+            }
+        }
+
+        // QR code signé, en bas à droite du récépissé
+        if (qrCode != null) {
+            document.add(new Image(ImageDataFactory.create(qrCode))
+                    .scaleToFit(TAILLE_QR, TAILLE_QR)
+                    .setHorizontalAlignment(HorizontalAlignment.RIGHT));
+        }
+    }
+
+    private static String assembler(List<Fragment> fragments, String[] valeurs) {
+        if (fragments.size() == 1) {
+            Fragment f = fragments.get(0);
+            return f.champ() == null ? f.texte() : valeurs[f.champ().ordinal()];
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Fragment f : fragments) {
+            sb.append(f.champ() == null ? f.texte() : valeurs[f.champ().ordinal()]);
+        }
+        return sb.toString();
+    }
+
+    // Valeurs calculées une fois par récépissé ; un champ absent est rendu vide
+    private static String[] valeursChamps(Declaration declaration) {
+        Declarant declarant = declaration.getDeclarant();
+        String[] valeurs = new String[Champ.VALEURS.length];
+        valeurs[Champ.NUMERO_REFERENCE.ordinal()] = declaration.getNumeroReference();
+        valeurs[Champ.NOM.ordinal()] = declarant.getNom();
+        valeurs[Champ.PRENOM.ordinal()] = declarant.getPrenom();
+        valeurs[Champ.ADRESSE.ordinal()] = declarant.getAdresse();
+        valeurs[Champ.TELEPHONE.ordinal()] = declarant.getTelephone();
+        valeurs[Champ.EMAIL.ordinal()] = declarant.getEmail();
+        valeurs[Champ.TYPE_DOCUMENT.ordinal()] = declaration.getTypeDocument().getLibelleTypeDocument();
+        valeurs[Champ.NUMERO_DOCUMENT.ordinal()] = declaration.getNumeroDocument();
+        valeurs[Champ.DATE_PERTE.ordinal()] = formatDate(declaration.getDatePerte());
+        // Date de la déclaration et non du rendu : la version (et l'ETag) reste stable d'un jour à l'autre
+        valeurs[Champ.DATE_JOUR.ordinal()] = formatDateIso(declaration.getDateDeclaration());
+        for (int i = 0; i < valeurs.length; i++) {
+            if (valeurs[i] == null) valeurs[i] = "";
+        }
+        return valeurs;
+    }
+
+    private static String formatDate(Date date) {
+        if (date == null) return "Non spécifiée";
+        return new SimpleDateFormat("dd/MM/yyyy").format(date);
+    }
+
+    // Même format que l'ancien LocalDate.now().toString() (aaaa-mm-jj)
+    private static String formatDateIso(Date date) {
+        if (date == null) return null;
+        return new SimpleDateFormat("yyyy-MM-dd").format(date);
+    }
+}
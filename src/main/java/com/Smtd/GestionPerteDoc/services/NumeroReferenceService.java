@@ -1,33 +1,112 @@
 package com.Smtd.GestionPerteDoc.services;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import java.time.Year;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import com.Smtd.GestionPerteDoc.entities.Declaration;
-import com.Smtd.GestionPerteDoc.repositories.DeclarationRepository;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Générateur des numéros de référence des déclarations.
+ *
+ * Les numéros viennent d'une séquence PostgreSQL dont le pas est la taille de bloc :
+ * chaque nextval réserve un bloc de numéros consécutifs pour ce noeud, distribués
+ * ensuite en mémoire. Plusieurs instances de l'application ne peuvent donc jamais
+ * obtenir le même numéro, et la base n'est sollicitée qu'une fois par bloc.
+ *
+ * Format : DECL-{codePoste}-{année}-{numéro sur 6 chiffres}, ex. DECL-POSTE-001-2025-000042.
+ */
 @Service
+@Slf4j
 public class NumeroReferenceService {
 
-    @Autowired
-    private DeclarationRepository declarationRepository;
-
-    public String generateNumeroReference() {
-        Declaration lastDeclaration = declarationRepository.findTopByOrderByNumeroReferenceDesc();
-        int nextNumber = 1;
-
-        if (lastDeclaration != null && lastDeclaration.getNumeroReference() != null) {
-            String lastRef = lastDeclaration.getNumeroReference(); 
-            if (lastRef.startsWith("DECL-BKO-")) {
-                String numberPart = lastRef.substring("DECL-BKO-".length());
-                try {
-                    nextNumber = Integer.parseInt(numberPart) + 1;
-                } catch (NumberFormatException e) {
-                    nextNumber = 1; 
-                }
-            }
+    static final String SEQUENCE = "declaration_reference_seq";
+    private static final String CODE_POSTE_DEFAUT = "BKO";
+    private static final int LONGUEUR_MAX = 50; // cf. Declaration.numeroReference
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int tailleBloc;
+
+    // Codes des postes déjà résolus : un poste n'est lu qu'une fois par noeud.
+    // L'unicité ne dépend que du numéro, un code renommé n'affecte que le préfixe.
+    private final Map<Long, String> codesPostes = new ConcurrentHashMap<>();
+
+    // Bloc courant : [prochainNumero, finBloc[ — protégé par le moniteur de l'instance
+    private long prochainNumero;
+    private long finBloc;
+
+    public NumeroReferenceService(JdbcTemplate jdbcTemplate,
+                                  @Value("${gestionpertedoc.app.referenceTailleBloc:50}") int tailleBloc) {
+        if (tailleBloc < 1) {
+            throw new IllegalArgumentException("La taille de bloc des références doit être positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.tailleBloc = tailleBloc;
+        verifierSequence();
+    }
+
+    public String generateNumeroReference(Long postePoliceId) {
+        String codePoste = postePoliceId != null
+                ? codesPostes.computeIfAbsent(postePoliceId, this::chargerCodePoste)
+                : CODE_POSTE_DEFAUT;
+        return formater(codePoste, Year.now().getValue(), prochainNumero());
+    }
+
+    private String chargerCodePoste(Long postePoliceId) {
+        List<String> codes = jdbcTemplate.queryForList(
+                "SELECT code_unique FROM postes_police WHERE id = ?", String.class, postePoliceId);
+        if (codes.isEmpty() || codes.get(0) == null || codes.get(0).isBlank()) {
+            return CODE_POSTE_DEFAUT;
+        }
+        return codes.get(0).trim().toUpperCase();
+    }
+
+    // ---------------- Allocation ----------------
+    synchronized long prochainNumero() {
+        if (prochainNumero >= finBloc) {
+            reserverBloc();
+        }
+        return prochainNumero++;
+    }
+
+    private void reserverBloc() {
+        Long debut = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE + "')", Long.class);
+        if (debut == null) {
+            throw new RuntimeException("Impossible de réserver un bloc de numéros de référence");
         }
+        prochainNumero = debut;
+        finBloc = debut + tailleBloc;
+        log.debug("Bloc de références réservé : [{}, {}[", prochainNumero, finBloc);
+    }
 
-        return String.format("DECL-BKO-%03d", nextNumber);
+    // Le pas de la séquence est fixé par migration (V6) et doit être égal à la taille de bloc,
+    // sinon deux noeuds pourraient se voir attribuer des blocs qui se chevauchent.
+    // Lecture seule : un noeud ne modifie jamais le pas sous les autres.
+    private void verifierSequence() {
+        List<Long> pas = jdbcTemplate.queryForList(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                Long.class, SEQUENCE);
+        if (pas.isEmpty()) {
+            throw new IllegalStateException("Séquence " + SEQUENCE + " absente : migrations Flyway non appliquées ?");
+        }
+        if (pas.get(0) != tailleBloc) {
+            throw new IllegalStateException("Le pas de " + SEQUENCE + " (" + pas.get(0)
+                    + ") diffère de gestionpertedoc.app.referenceTailleBloc (" + tailleBloc
+                    + ") : changer la taille de bloc demande une migration");
+        }
+    }
+
+    static String formater(String codePoste, int annee, long numero) {
+        String suffixe = String.format("-%d-%06d", annee, numero);
+        int placeCode = LONGUEUR_MAX - "DECL-".length() - suffixe.length();
+        if (codePoste.length() > placeCode) {
+            codePoste = codePoste.substring(0, placeCode);
+        }
+        return "DECL-" + codePoste + suffixe;
     }
 }
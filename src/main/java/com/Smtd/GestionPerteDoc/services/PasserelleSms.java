@@ -0,0 +1,25 @@
+package com.Smtd.GestionPerteDoc.services;
+
+/**
+ * Fournisseur d'envoi de SMS, choisi par gestionpertedoc.app.sms.fournisseur
+ * (twilio, ou local par défaut : aucun envoi réel).
+ *
+ * Appelée uniquement depuis les threads de SmsOutboxDispatcher, jamais pendant une requête HTTP.
+ */
+public interface PasserelleSms {
+
+    /**
+     * Envoie le message et retourne l'identifiant attribué par le fournisseur.
+     *
+     * @throws SmsRefuseException si le fournisseur refuse ce message en particulier
+     *         (numéro invalide, destinataire bloqué) : il ne sera pas retenté
+     */
+    String envoyer(String numero, String texte) throws Exception;
+
+    /** Refus définitif d'un message, sans rapport avec la disponibilité du fournisseur. */
+    class SmsRefuseException extends Exception {
+        public SmsRefuseException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passerelle sans envoi réel (développement, tests) : journalise les SMS et garde
+ * les derniers en mémoire.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "gestionpertedoc.app.sms.fournisseur", havingValue = "local", matchIfMissing = true)
+public class PasserelleSmsLocale implements PasserelleSms {
+
+    private static final int MESSAGES_CONSERVES = 100;
+
+    public record SmsLocal(String numero, String texte) {}
+
+    private final ArrayDeque<SmsLocal> derniers = new ArrayDeque<>();
+    private final AtomicLong numero = new AtomicLong();
+
+    @Override
+    public String envoyer(String numero, String texte) {
+        synchronized (derniers) {
+            if (derniers.size() == MESSAGES_CONSERVES) derniers.pollFirst();
+            derniers.addLast(new SmsLocal(numero, texte));
+        }
+        log.info("SMS (non envoyé, passerelle locale) à {} : {}", numero, texte);
+        return "local-" + this.numero.incrementAndGet();
+    }
+
+    /** Derniers SMS reçus, du plus ancien au plus récent. */
+    public List<SmsLocal> derniers() {
+        synchronized (derniers) {
+            return List.copyOf(derniers);
+        }
+    }
+}
@@ -1,126 +1,144 @@
 package com.Smtd.GestionPerteDoc.services;
 
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
 import com.Smtd.GestionPerteDoc.entities.Declaration;
-import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
 import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
 import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.ListItem;
-import com.itextpdf.layout.element.Paragraph;
-import com.itextpdf.layout.element.Text;
-import com.itextpdf.layout.element.List;
-import org.apache.poi.xwpf.usermodel.*;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.text.SimpleDateFormat;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 public class PdfGeneratorService {
 
-    private static String formatDate(java.util.Date date) {
-        if (date == null) return "Non spécifiée";
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
-        return sdf.format(date);
+    private static final String TEMPLATE = "/templates/template_police_dynamic.docx";
+
+    // Programme de police partagé : seul l'objet PdfFont (lié à un document) est recréé par PDF
+    private static final FontProgram TIMES_ROMAN;
+    static {
+        try {
+            TIMES_ROMAN = FontProgramFactory.createFont(StandardFonts.TIMES_ROMAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Compression complète : flux d'objets et table des références compressés.
+    // Niveau de compression par défaut : le niveau maximal ne gagne rien sur un récépissé
+    private static final WriterProperties PROPRIETES_ECRITURE = new WriterProperties()
+            .setFullCompressionMode(true);
+
+    // Modèle de l'application, compilé au premier usage puis réutilisé. Les gabarits du
+    // dossier surveillé sont tenus par RegistreGabaritsService
+    private static final class ModeleApplication {
+        private static final GabaritRecu GABARIT;
+        static {
+            try {
+                GABARIT = compilerTemplate();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     public static byte[] generateDeclarationPdf(Declaration declaration) throws Exception {
-        InputStream is = PdfGeneratorService.class.getResourceAsStream("/templates/template_police_dynamic.docx");
-        if (is == null) throw new RuntimeException("Template introuvable");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ecrireDeclarationPdf(declaration, baos);
+        return baos.toByteArray();
+    }
 
-        XWPFDocument doc = new XWPFDocument(is);
+    public static long ecrireDeclarationPdf(Declaration declaration, OutputStream sortie) throws IOException {
+        return ecrireDeclarationPdf(declaration, null, sortie);
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PdfWriter writer = new PdfWriter(baos);
-        PdfDocument pdf = new PdfDocument(writer);
-        Document document = new Document(pdf);
-
-        // Parcourir tous les paragraphes du Word
-        for (IBodyElement element : doc.getBodyElements()) {
-            if (element instanceof XWPFParagraph) {
-                XWPFParagraph para = (XWPFParagraph) element;
-
-                // Vérifier si c’est une liste
-                if (para.getNumID() != null) {
-                    List pdfList = new List()
-                            .setSymbolIndent(12)
-                            .setListSymbol("\u2022"); // puce par défaut
-
-                    int numID = para.getNumID().intValue();
-                    XWPFNumbering numbering = doc.getNumbering();
-                    for (XWPFParagraph p : doc.getParagraphs()) {
-                        if (p.getNumID() != null && p.getNumID().intValue() == numID) {
-                            String text = getRunText(p, declaration);
-                            pdfList.add(new ListItem(text));
-                        }
-                    }
-                    document.add(pdfList);
-                    continue;
-                }
-
-                Paragraph pdfPara = new Paragraph();
-                // Alignement
-                switch (para.getAlignment()) {
-                    case CENTER -> pdfPara.setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER);
-                    case RIGHT -> pdfPara.setTextAlignment(com.itextpdf.layout.properties.TextAlignment.RIGHT);
-                    case BOTH -> pdfPara.setTextAlignment(com.itextpdf.layout.properties.TextAlignment.JUSTIFIED);
-                    default -> pdfPara.setTextAlignment(com.itextpdf.layout.properties.TextAlignment.LEFT);
-                }
-
-                // Espacements
-                pdfPara.setMarginTop(para.getSpacingBefore())
-                        .setMarginBottom(para.getSpacingAfter());
-
-                // Ajouter tous les runs (texte avec mise en forme)
-                for (XWPFRun run : para.getRuns()) {
-                    String text = run.text();
-                    if (text == null || text.isEmpty()) continue;
-
-                    // Remplacer placeholders
-                    text = replacePlaceholders(text, declaration);
-
-                    Text pdfText = new Text(text)
-                            .setFont(PdfFontFactory.createFont("Times-Roman"))
-                            .setFontSize(12);
-
-                    if (run.isBold()) pdfText.setBold();
-                    if (run.isItalic()) pdfText.setItalic();
-                    if (run.isStrike()) pdfText.setStrokeWidth(0.5f);
-                    if (run.getColor() != null) pdfText.setFontColor(ColorConstants.BLACK); // simplifié
-
-                    pdfPara.add(pdfText);
-                }
-                document.add(pdfPara);
+    /**
+     * Écrit le récépissé directement dans le flux fourni, sans copie en mémoire, avec le
+     * QR code signé (image PNG) s'il est fourni.
+     * Le flux n'est pas fermé. Retourne le nombre d'octets écrits.
+     */
+    public static long ecrireDeclarationPdf(Declaration declaration, byte[] qrCode, OutputStream sortie) throws IOException {
+        return ecrireDeclarationPdf(declaration, gabaritApplication(), qrCode, sortie);
+    }
 
-            }
+    // Rendu avec un gabarit déjà choisi (RegistreGabaritsService) : celui qui a servi à
+    // calculer la version du récépissé
+    static long ecrireDeclarationPdf(Declaration declaration, GabaritRecu gabaritRecu, byte[] qrCode,
+                                     OutputStream sortie) throws IOException {
+        // Classe statique : les métriques passent par le registre global, alimenté par Spring Boot
+        Timer.Sample chrono = Timer.start(Metrics.globalRegistry);
+        String resultat = "erreur";
+        try {
+            CompteurOctets compteur = new CompteurOctets(sortie);
+            PdfWriter writer = new PdfWriter(compteur, PROPRIETES_ECRITURE);
+            writer.setCloseStream(false);
+            Document document = new Document(new PdfDocument(writer));
+
+            // Police standard (Times) : référencée, jamais embarquée dans le fichier
+            PdfFont police = PdfFontFactory.createFont(TIMES_ROMAN);
+            gabaritRecu.rendre(declaration, document, police, qrCode);
+
+            document.close();
+            DistributionSummary.builder("gestionpertedoc.pdf.taille").baseUnit("bytes")
+                    .register(Metrics.globalRegistry).record(compteur.octets);
+            resultat = "succes";
+            return compteur.octets;
+        } finally {
+            chrono.stop(Metrics.timer("gestionpertedoc.pdf.generation", MetriquesConfig.TAG_RESULTAT, resultat));
         }
+    }
 
-        document.close();
-        return baos.toByteArray();
+    // Modèle Word de l'application, sans les gabarits du dossier surveillé
+    static GabaritRecu gabaritApplication() {
+        return ModeleApplication.GABARIT;
     }
 
-    private static String replacePlaceholders(String text, Declaration declaration) {
-        return text
-                .replace("{{numero_reference}}", declaration.getNumeroReference())
-                .replace("{{nom}}", declaration.getDeclarant().getNom())
-                .replace("{{prenom}}", declaration.getDeclarant().getPrenom())
-                .replace("{{adresse}}", declaration.getDeclarant().getAdresse())
-                .replace("{{telephone}}", declaration.getDeclarant().getTelephone())
-                .replace("{{email}}", declaration.getDeclarant().getEmail())
-                .replace("{{type_document}}", declaration.getTypeDocument().getLibelleTypeDocument())
-                .replace("{{numero_document}}", declaration.getNumeroDocument())
-                .replace("{{date_perte}}", formatDate(declaration.getDatePerte()))
-                .replace("{{date_jour}}", java.time.LocalDate.now().toString());
+    /**
+     * Compile le modèle Word de l'application (mesure du coût de compilation).
+     */
+    public static GabaritRecu compilerTemplate() throws IOException {
+        try (InputStream is = PdfGeneratorService.class.getResourceAsStream(TEMPLATE)) {
+            if (is == null) throw new RuntimeException("Template introuvable");
+            return GabaritRecu.compiler(is);
+        }
     }
 
-    private static String getRunText(XWPFParagraph para, Declaration declaration) {
-        StringBuilder sb = new StringBuilder();
-        for (XWPFRun run : para.getRuns()) {
-            String text = run.text();
-            if (text != null) {
-                sb.append(replacePlaceholders(text, declaration));
-            }
+    // Compte les octets transmis au flux de sortie (taille du PDF sans le garder en mémoire).
+    // Le flush est laissé à l'appelant : sur une réponse HTTP, il l'enverrait avant que
+    // sa taille soit connue.
+    private static final class CompteurOctets extends FilterOutputStream {
+        private long octets;
+
+        CompteurOctets(OutputStream sortie) {
+            super(sortie);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            octets++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            octets += len;
+        }
+
+        @Override
+        public void flush() {
         }
-        return sb.toString();
     }
 }
@@ -0,0 +1,123 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.repositories.DeclarationRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rendu anticipé des récépissés dans le cache disque, après validation de la transaction.
+ *
+ * Le pool est borné (threads et file d'attente). Quand la file est pleine, le rendu
+ * anticipé est abandonné : le récépissé sera rendu au premier téléchargement ou à
+ * l'envoi de l'email, la requête de création n'attend jamais.
+ */
+@Service
+@Slf4j
+public class PrerenduRecuService {
+
+    private final DeclarationRepository declarationRepository;
+    private final CacheRecuService cacheRecuService;
+    private final TransactionTemplate transactionLecture;
+    private final ThreadPoolExecutor executeur;
+
+    private final Counter succes;
+    private final Counter erreurs;
+    private final Counter abandons;
+
+    public PrerenduRecuService(DeclarationRepository declarationRepository,
+                               CacheRecuService cacheRecuService,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${gestionpertedoc.app.recuPrerendu.threads:2}") int threads,
+                               @Value("${gestionpertedoc.app.recuPrerendu.file:200}") int capaciteFile) {
+        this.declarationRepository = declarationRepository;
+        this.cacheRecuService = cacheRecuService;
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+
+        AtomicInteger numero = new AtomicInteger();
+        this.executeur = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capaciteFile),
+                tache -> {
+                    Thread t = new Thread(tache, "prerendu-recu-" + numero.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.succes = compteur(meterRegistry, "succes");
+        this.erreurs = compteur(meterRegistry, "erreur");
+        this.abandons = compteur(meterRegistry, "abandon");
+        Gauge.builder("gestionpertedoc.recu.prerendu.file", executeur, e -> e.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Planifie le rendu du récépissé, après validation de la transaction en cours s'il y en a une.
+     */
+    public void planifier(Long declarationId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    soumettre(declarationId);
+                }
+            });
+        } else {
+            soumettre(declarationId);
+        }
+    }
+
+    private void soumettre(Long declarationId) {
+        try {
+            executeur.execute(() -> rendre(declarationId));
+        } catch (RejectedExecutionException e) {
+            abandons.increment();
+            log.debug("File de pré-rendu pleine, récépissé {} rendu à la demande", declarationId);
+        }
+    }
+
+    // Lecture dans une courte transaction, rendu hors transaction : la connexion JDBC
+    // n'est pas tenue pendant la génération du PDF
+    private void rendre(Long declarationId) {
+        try {
+            Declaration declaration = transactionLecture.execute(status ->
+                    declarationRepository.findByIdWithDetails(declarationId).orElse(null));
+            if (declaration == null) return;
+            cacheRecuService.obtenir(declaration);
+            succes.increment();
+        } catch (Exception e) {
+            erreurs.increment();
+            log.warn("Pré-rendu du récépissé {} impossible : {}", declarationId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void arreter() {
+        executeur.shutdownNow();
+    }
+
+    private static Counter compteur(MeterRegistry meterRegistry, String resultat) {
+        return Counter.builder("gestionpertedoc.recu.prerendu")
+                .tag(MetriquesConfig.TAG_RESULTAT, resultat).register(meterRegistry);
+    }
+}
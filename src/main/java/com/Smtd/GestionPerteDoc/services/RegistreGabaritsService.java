@@ -0,0 +1,59 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.entities.TypeDocument;
+
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gabarits de récépissé en service : ceux du dossier surveillé (voir SurveillanceGabaritsService),
+ * par code de type de document, et le gabarit par défaut du dossier qui remplace le modèle de
+ * l'application.
+ *
+ * La table est immuable et remplacée d'un bloc : un rendu voit l'ancien ou le nouveau gabarit,
+ * jamais un mélange, sans verrou sur le chemin de lecture.
+ */
+@Service
+public class RegistreGabaritsService {
+
+    // Clé du gabarit par défaut (defaut.docx) ; ce nom de fichier ne peut pas servir à un type
+    private static final String DEFAUT = "defaut";
+
+    private final AtomicReference<Map<String, GabaritRecu>> gabarits = new AtomicReference<>(Map.of());
+
+    /**
+     * Installe (ou retire, si gabarit est null) le gabarit d'un type de document, ou le
+     * gabarit par défaut si codeTypeDocument est null.
+     */
+    void installer(String codeTypeDocument, GabaritRecu gabarit) {
+        String cle = codeTypeDocument != null ? codeTypeDocument : DEFAUT;
+        gabarits.updateAndGet(actuels -> {
+            Map<String, GabaritRecu> copie = new HashMap<>(actuels);
+            if (gabarit == null) {
+                copie.remove(cle);
+            } else {
+                copie.put(cle, gabarit);
+            }
+            return Map.copyOf(copie);
+        });
+    }
+
+    // Retour au seul modèle de l'application
+    void retirerTout() {
+        gabarits.set(Map.of());
+    }
+
+    // Gabarit du type de document, sinon gabarit par défaut du dossier, sinon le modèle de l'application
+    GabaritRecu gabaritPour(Declaration declaration) {
+        Map<String, GabaritRecu> actuels = gabarits.get();
+        TypeDocument type = declaration.getTypeDocument();
+        GabaritRecu g = type != null && type.getCodeTypeDocument() != null
+                ? actuels.get(type.getCodeTypeDocument()) : null;
+        if (g == null) g = actuels.get(DEFAUT);
+        return g != null ? g : PdfGeneratorService.gabaritApplication();
+    }
+}
@@ -0,0 +1,159 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Signature HMAC des récépissés et QR code imprimé dessus.
+ *
+ * Le jeton contient le numéro de référence, l'identifiant de la déclaration, le type de
+ * document et la date d'émission, suivis de leur signature (HMAC-SHA256 tronqué à 128 bits).
+ * La vérification ne lit que le jeton et la clé : aucune requête en base.
+ * Les images QR sont gardées en mémoire par déclaration (LRU borné).
+ */
+@Service
+public class SignatureRecuService {
+
+    private static final String HMAC = "HmacSHA256";
+    private static final String VERSION_JETON = "1";
+    private static final int OCTETS_SIGNATURE = 16;
+    private static final int TAILLE_QR = 180;
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODE = Base64.getUrlDecoder();
+
+    /** Contenu d'un récépissé dont la signature est valide. */
+    public record RecuVerifie(String numeroReference, Long declarationId, String typeDocument, String dateEmission) {}
+
+    private record QrCode(String jeton, byte[] png) {}
+
+    private final SecretKeySpec cle;
+    private final String urlVerification;
+    private final int tailleCache;
+
+    // Ordre d'accès : l'image la moins récemment servie est évincée en premier
+    private final LinkedHashMap<Long, QrCode> qrCodes;
+
+    public SignatureRecuService(@Value("${gestionpertedoc.app.recuSignature.secret}") String secret,
+                                @Value("${gestionpertedoc.app.recuSignature.urlVerification:}") String urlVerification,
+                                @Value("${gestionpertedoc.app.recuSignature.cacheQr:2000}") int tailleCache) {
+        if (secret == null || secret.isBlank()) throw new IllegalStateException("Clé de signature des récépissés absente");
+        this.cle = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        this.urlVerification = urlVerification;
+        this.tailleCache = tailleCache;
+        this.qrCodes = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, QrCode> eldest) {
+                return size() > SignatureRecuService.this.tailleCache;
+            }
+        };
+    }
+
+    // ---------------- Signature ----------------
+    /**
+     * Jeton signé de la déclaration (chargée avec son type de document).
+     */
+    public String jeton(Declaration declaration) {
+        // Le libellé du type vient en dernier : il peut contenir le séparateur
+        String contenu = String.join("|",
+                VERSION_JETON,
+                declaration.getNumeroReference(),
+                String.valueOf(declaration.getId()),
+                formatDate(declaration.getCreeLe()),
+                declaration.getTypeDocument().getLibelleTypeDocument());
+        byte[] octets = contenu.getBytes(StandardCharsets.UTF_8);
+        return BASE64.encodeToString(octets) + "." + BASE64.encodeToString(signer(octets));
+    }
+
+    /**
+     * Contenu du jeton si sa signature est valide, vide sinon (jeton altéré, mal formé ou d'une autre clé).
+     */
+    public Optional<RecuVerifie> verifier(String jeton) {
+        if (jeton == null) return Optional.empty();
+        int point = jeton.indexOf('.');
+        if (point <= 0) return Optional.empty();
+        try {
+            byte[] octets = BASE64_DECODE.decode(jeton.substring(0, point));
+            byte[] signature = BASE64_DECODE.decode(jeton.substring(point + 1));
+            // Comparaison en temps constant
+            if (!MessageDigest.isEqual(signer(octets), signature)) return Optional.empty();
+
+            String[] champs = new String(octets, StandardCharsets.UTF_8).split("\\|", 5);
+            if (champs.length != 5 || !VERSION_JETON.equals(champs[0])) return Optional.empty();
+            return Optional.of(new RecuVerifie(champs[1], Long.valueOf(champs[2]), champs[4], champs[3]));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] signer(byte[] octets) {
+        try {
+            // Mac n'est pas thread-safe : une instance par appel
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(cle);
+            byte[] complet = mac.doFinal(octets);
+            byte[] tronque = new byte[OCTETS_SIGNATURE];
+            System.arraycopy(complet, 0, tronque, 0, OCTETS_SIGNATURE);
+            return tronque;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ---------------- QR code ----------------
+    /**
+     * Image PNG du QR code portant le jeton (précédé de l'URL de vérification si elle est configurée).
+     * Générée une fois par déclaration, tant que son jeton ne change pas.
+     */
+    public byte[] qrCode(Long declarationId, String jeton) throws IOException {
+        synchronized (qrCodes) {
+            QrCode qr = qrCodes.get(declarationId);
+            if (qr != null && qr.jeton().equals(jeton)) return qr.png();
+        }
+        byte[] png = genererQrCode(urlVerification + jeton);
+        synchronized (qrCodes) {
+            qrCodes.put(declarationId, new QrCode(jeton, png));
+        }
+        return png;
+    }
+
+    private static byte[] genererQrCode(String contenu) throws IOException {
+        try {
+            BitMatrix matrice = new QRCodeWriter().encode(contenu, BarcodeFormat.QR_CODE,
+                    TAILLE_QR, TAILLE_QR, Map.of(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M,
+                            EncodeHintType.MARGIN, 1));
+            ByteArrayOutputStream png = new ByteArrayOutputStream(2048);
+            MatrixToImageWriter.writeToStream(matrice, "PNG", png);
+            return png.toByteArray();
+        } catch (WriterException e) {
+            throw new IOException("QR code impossible à générer", e);
+        }
+    }
+
+    private static String formatDate(Date date) {
+        return date == null ? "" : new SimpleDateFormat("yyyy-MM-dd").format(date);
+    }
+}
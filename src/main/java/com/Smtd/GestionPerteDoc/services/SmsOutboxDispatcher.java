@@ -0,0 +1,225 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
+import com.Smtd.GestionPerteDoc.entities.SmsSortant;
+import com.Smtd.GestionPerteDoc.enums.StatutEmail;
+import com.Smtd.GestionPerteDoc.repositories.SmsSortantRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expédition en arrière-plan des SMS de l'outbox.
+ *
+ * Même cycle que les emails : réservation d'un lot (SKIP LOCKED puis bail), envois hors
+ * transaction, résultats enregistrés, reprises avec délai exponentiel. Les SMS d'un lot
+ * partent en parallèle sur un pool borné (au plus `concurrence` appels simultanés au
+ * fournisseur), et leurs résultats sont écrits ensemble dans une seule transaction.
+ * Un message refusé par le fournisseur (numéro invalide) n'est pas retenté.
+ */
+@Component
+@Slf4j
+public class SmsOutboxDispatcher {
+
+    private static final long DELAI_MAX_MS = 3_600_000L;
+
+    private final SmsSortantRepository smsSortantRepository;
+    private final PasserelleSms passerelle;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate transactionLecture;
+    private final ExecutorService executeur;
+
+    private final int tailleLot;
+    private final int maxTentatives;
+    private final long delaiBaseMs;
+    private final long bailMs;
+    private final MeterRegistry meterRegistry;
+
+    // Compteurs depuis le démarrage du noeud
+    private final AtomicLong envoyes = new AtomicLong();
+    private final AtomicLong echecsTemporaires = new AtomicLong();
+    private final AtomicLong echecsDefinitifs = new AtomicLong();
+
+    public SmsOutboxDispatcher(SmsSortantRepository smsSortantRepository,
+                               PasserelleSms passerelle,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${gestionpertedoc.app.sms.concurrence:4}") int concurrence,
+                               @Value("${gestionpertedoc.app.sms.tailleLot:50}") int tailleLot,
+                               @Value("${gestionpertedoc.app.sms.maxTentatives:6}") int maxTentatives,
+                               @Value("${gestionpertedoc.app.sms.delaiBaseMs:30000}") long delaiBaseMs,
+                               @Value("${gestionpertedoc.app.sms.bailMs:300000}") long bailMs) {
+        this.smsSortantRepository = smsSortantRepository;
+        this.passerelle = passerelle;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.tailleLot = tailleLot;
+        this.maxTentatives = maxTentatives;
+        this.delaiBaseMs = delaiBaseMs;
+        this.bailMs = bailMs;
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger numero = new AtomicInteger();
+        this.executeur = Executors.newFixedThreadPool(concurrence, tache -> {
+            Thread t = new Thread(tache, "envoi-sms-" + numero.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        lierCompteur("envoye", envoyes);
+        lierCompteur("echec_temporaire", echecsTemporaires);
+        lierCompteur("echec_definitif", echecsDefinitifs);
+    }
+
+    @Scheduled(fixedDelayString = "${gestionpertedoc.app.sms.intervalleMs:2000}")
+    public void expedier() {
+        List<Long> ids = reserverLot();
+        if (ids.isEmpty()) return;
+        List<SmsSortant> lot = transactionLecture.execute(status -> smsSortantRepository.findAllById(ids));
+        if (lot == null) return;
+
+        Map<Long, Future<String>> envois = new LinkedHashMap<>();
+        for (SmsSortant sms : lot) {
+            if (sms.getStatut() != StatutEmail.EN_ATTENTE) continue;
+            envois.put(sms.getId(), executeur.submit(() -> envoyerMesure(sms)));
+        }
+
+        Map<Long, String> reussis = new LinkedHashMap<>();
+        Map<Long, Exception> echoues = new LinkedHashMap<>();
+        for (Map.Entry<Long, Future<String>> envoi : envois.entrySet()) {
+            try {
+                reussis.put(envoi.getKey(), envoi.getValue().get());
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ex ? ex : e;
+                log.warn("Échec d'envoi du SMS {} : {}", envoi.getKey(), cause.getMessage());
+                echoues.put(envoi.getKey(), cause);
+            } catch (InterruptedException e) {
+                // Arrêt de l'application : les SMS non enregistrés repartiront à la fin du bail
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        transaction.executeWithoutResult(status -> {
+            reussis.forEach(this::marquerEnvoye);
+            echoues.forEach(this::marquerEchec);
+        });
+    }
+
+    private List<Long> reserverLot() {
+        List<Long> ids = transaction.execute(status -> {
+            Date maintenant = new Date();
+            List<Long> lot = smsSortantRepository.verrouillerLot(maintenant, tailleLot);
+            if (!lot.isEmpty()) {
+                smsSortantRepository.prolongerBail(lot, new Date(maintenant.getTime() + bailMs));
+            }
+            return lot;
+        });
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    // Durée de l'appel au fournisseur par type de SMS et résultat
+    private String envoyerMesure(SmsSortant sms) throws Exception {
+        Timer.Sample chrono = Timer.start(meterRegistry);
+        String resultat = "erreur";
+        try {
+            String identifiant = passerelle.envoyer(sms.getDestinataire(), texte(sms));
+            resultat = "succes";
+            return identifiant;
+        } finally {
+            chrono.stop(meterRegistry.timer("gestionpertedoc.sms.envoi",
+                    "type", sms.getType().name(), MetriquesConfig.TAG_RESULTAT, resultat));
+        }
+    }
+
+    // Textes courts, en caractères GSM 7 bits : un seul segment par SMS
+    private static String texte(SmsSortant sms) {
+        return switch (sms.getType()) {
+            case RECU_DECLARATION -> "Déclaration de perte enregistrée. Référence : " + sms.getNumeroReference()
+                    + ". Conservez-la pour le suivi de votre dossier.";
+            case DECLARATION_VALIDEE -> "Votre déclaration " + sms.getNumeroReference()
+                    + " est validée : vous pouvez venir récupérer votre document.";
+        };
+    }
+
+    private void marquerEnvoye(Long id, String identifiantFournisseur) {
+        smsSortantRepository.findById(id).ifPresent(sms -> {
+            sms.setStatut(StatutEmail.ENVOYE);
+            sms.setTentatives(sms.getTentatives() + 1);
+            sms.setEnvoyeLe(new Date());
+            sms.setIdentifiantFournisseur(identifiantFournisseur);
+            sms.setDerniereErreur(null);
+            envoyes.incrementAndGet();
+        });
+    }
+
+    private void marquerEchec(Long id, Exception erreur) {
+        smsSortantRepository.findById(id).ifPresent(sms -> {
+            int tentatives = sms.getTentatives() + 1;
+            sms.setTentatives(tentatives);
+            sms.setDerniereErreur(tronquer(erreur.getClass().getSimpleName() + ": " + erreur.getMessage()));
+
+            if (erreur instanceof PasserelleSms.SmsRefuseException || tentatives >= maxTentatives) {
+                sms.setStatut(StatutEmail.ECHEC);
+                echecsDefinitifs.incrementAndGet();
+                log.error("SMS {} abandonné après {} tentative(s)", id, tentatives);
+            } else {
+                sms.setProchaineTentative(new Date(System.currentTimeMillis() + delai(tentatives)));
+                echecsTemporaires.incrementAndGet();
+            }
+        });
+    }
+
+    // Délai exponentiel : base, 2 x base, 4 x base, ... plafonné à une heure
+    private long delai(int tentatives) {
+        long delai = delaiBaseMs << Math.min(tentatives - 1, 20);
+        return Math.min(delai, DELAI_MAX_MS);
+    }
+
+    private static String tronquer(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    @PreDestroy
+    void arreter() {
+        executeur.shutdownNow();
+    }
+
+    // ---------------- Métriques ----------------
+    private void lierCompteur(String resultat, AtomicLong compteur) {
+        FunctionCounter.builder("gestionpertedoc.sms.outbox", compteur, AtomicLong::get)
+                .description("SMS traités par l'outbox depuis le démarrage")
+                .tag(MetriquesConfig.TAG_RESULTAT, resultat)
+                .register(meterRegistry);
+    }
+
+    public Map<String, Long> compteurs() {
+        Map<String, Long> compteurs = new LinkedHashMap<>();
+        compteurs.put("envoyes", envoyes.get());
+        compteurs.put("echecsTemporaires", echecsTemporaires.get());
+        compteurs.put("echecsDefinitifs", echecsDefinitifs.get());
+        return compteurs;
+    }
+}
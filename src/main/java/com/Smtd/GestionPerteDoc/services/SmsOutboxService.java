@@ -0,0 +1,96 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.entities.Declarant;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.entities.SmsSortant;
+import com.Smtd.GestionPerteDoc.enums.StatutEmail;
+import com.Smtd.GestionPerteDoc.enums.TypeSms;
+import com.Smtd.GestionPerteDoc.repositories.SmsSortantRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Mise en file des SMS au déclarant (outbox), dans la transaction de l'appelant comme
+ * pour les emails. Par défaut seuls les déclarants sans email sont notifiés par SMS.
+ */
+@Service
+@Slf4j
+@Transactional
+public class SmsOutboxService {
+
+    private static final Pattern NUMERO_INTERNATIONAL = Pattern.compile("\\+[1-9][0-9]{7,14}");
+    private static final Pattern SEPARATEURS = Pattern.compile("[\\s.\\-()/]");
+
+    private final SmsSortantRepository smsSortantRepository;
+    private final String indicatif;
+    private final boolean seulementSansEmail;
+
+    public SmsOutboxService(SmsSortantRepository smsSortantRepository,
+                            @Value("${gestionpertedoc.app.sms.indicatif:+223}") String indicatif,
+                            @Value("${gestionpertedoc.app.sms.seulementSansEmail:true}") boolean seulementSansEmail) {
+        this.smsSortantRepository = smsSortantRepository;
+        this.indicatif = indicatif;
+        this.seulementSansEmail = seulementSansEmail;
+    }
+
+    // ---------------- Mise en file ----------------
+    public void planifierRecuDeclaration(Declaration declaration) {
+        planifier(TypeSms.RECU_DECLARATION, declaration.getDeclarant(), declaration.getNumeroReference());
+    }
+
+    public void planifierDeclarationValidee(Declaration declaration) {
+        planifier(TypeSms.DECLARATION_VALIDEE, declaration.getDeclarant(), declaration.getNumeroReference());
+    }
+
+    private void planifier(TypeSms type, Declarant declarant, String numeroReference) {
+        if (declarant == null) return;
+        if (seulementSansEmail && declarant.getEmail() != null && !declarant.getEmail().isBlank()) return;
+        String numero = normaliserNumero(declarant.getTelephone());
+        if (numero == null) {
+            log.debug("SMS {} ignoré : numéro inutilisable", type);
+            return;
+        }
+        Date maintenant = new Date();
+        SmsSortant sms = new SmsSortant();
+        sms.setType(type);
+        sms.setDestinataire(numero);
+        sms.setNumeroReference(numeroReference);
+        sms.setStatut(StatutEmail.EN_ATTENTE);
+        sms.setCreeLe(maintenant);
+        sms.setProchaineTentative(maintenant);
+        smsSortantRepository.save(sms);
+    }
+
+    // Format international : 00 remplacé par +, indicatif ajouté aux numéros locaux.
+    // Les numéros factices (que des zéros) et mal formés sont écartés
+    private String normaliserNumero(String telephone) {
+        if (telephone == null) return null;
+        String numero = SEPARATEURS.matcher(telephone).replaceAll("");
+        if (numero.isEmpty() || numero.chars().allMatch(c -> c == '0')) return null;
+        if (numero.startsWith("00")) numero = "+" + numero.substring(2);
+        else if (!numero.startsWith("+")) numero = indicatif + numero;
+        return NUMERO_INTERNATIONAL.matcher(numero).matches() ? numero : null;
+    }
+
+    // ---------------- Métriques ----------------
+    @Transactional(readOnly = true)
+    public Map<String, Long> compterParStatut() {
+        Map<String, Long> compteurs = new LinkedHashMap<>();
+        for (StatutEmail statut : StatutEmail.values()) {
+            compteurs.put(statut.name(), 0L);
+        }
+        for (Object[] ligne : smsSortantRepository.compterParStatut()) {
+            compteurs.put(((StatutEmail) ligne[0]).name(), (Long) ligne[1]);
+        }
+        return compteurs;
+    }
+}
@@ -0,0 +1,128 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gabarits de récépissé par type de document, lus dans un dossier surveillé.
+ *
+ * Un fichier {codeTypeDocument}.docx (ex. PASSEPORT.docx) sert aux déclarations de ce type,
+ * defaut.docx à tous les autres ; sans fichier, le modèle de l'application est utilisé.
+ * Chaque fichier est compilé une fois au démarrage puis à chaque modification, et le gabarit
+ * compilé remplace l'ancien d'un bloc : aucun redémarrage, aucune lecture du .docx par
+ * récépissé. Un fichier illisible (copie en cours, document invalide) laisse l'ancien gabarit
+ * en place. Les récépissés en cache sont rendus à nouveau, leur version changeant avec le gabarit.
+ */
+@Service
+@Slf4j
+public class SurveillanceGabaritsService {
+
+    private static final String EXTENSION = ".docx";
+    private static final String FICHIER_DEFAUT = "defaut" + EXTENSION;
+
+    // Attente après un événement : un éditeur écrit souvent un fichier en plusieurs fois
+    private static final long DELAI_STABILISATION_MS = 300;
+
+    private final Path dossier;
+    private final RegistreGabaritsService registreGabaritsService;
+    private WatchService surveillance;
+    private Thread thread;
+
+    public SurveillanceGabaritsService(@Value("${gestionpertedoc.app.gabarits.dossier:}") String dossier,
+                                       RegistreGabaritsService registreGabaritsService) {
+        this.dossier = dossier == null || dossier.isBlank() ? null : Paths.get(dossier);
+        this.registreGabaritsService = registreGabaritsService;
+    }
+
+    @PostConstruct
+    void demarrer() throws IOException {
+        if (dossier == null) {
+            log.info("Aucun dossier de gabarits configuré : modèle de récépissé de l'application seul");
+            return;
+        }
+        Files.createDirectories(dossier);
+        // Surveillance enregistrée avant le chargement : aucune modification n'est manquée entre les deux
+        surveillance = dossier.getFileSystem().newWatchService();
+        dossier.register(surveillance, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(dossier, "*" + EXTENSION)) {
+            for (Path fichier : fichiers) {
+                recharger(fichier.getFileName().toString());
+            }
+        }
+
+        thread = new Thread(this::surveiller, "surveillance-gabarits");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Gabarits de récépissé surveillés dans {}", dossier.toAbsolutePath());
+    }
+
+    private void surveiller() {
+        try {
+            while (true) {
+                WatchKey cle = surveillance.take();
+                Set<String> modifies = new LinkedHashSet<>();
+                // Événements regroupés jusqu'à ce que le dossier se stabilise
+                while (cle != null) {
+                    for (WatchEvent<?> evenement : cle.pollEvents()) {
+                        if (evenement.context() instanceof Path fichier) {
+                            modifies.add(fichier.getFileName().toString());
+                        }
+                    }
+                    cle.reset();
+                    cle = surveillance.poll(DELAI_STABILISATION_MS, TimeUnit.MILLISECONDS);
+                }
+                modifies.forEach(this::recharger);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Arrêt de l'application
+        }
+    }
+
+    // Compile le fichier et installe le gabarit, ou le retire si le fichier a disparu
+    void recharger(String nomFichier) {
+        if (!nomFichier.endsWith(EXTENSION) || nomFichier.startsWith("~$") || nomFichier.startsWith(".")) return;
+        String code = FICHIER_DEFAUT.equals(nomFichier)
+                ? null : nomFichier.substring(0, nomFichier.length() - EXTENSION.length());
+        Path fichier = dossier.resolve(nomFichier);
+
+        if (!Files.exists(fichier)) {
+            registreGabaritsService.installer(code, null);
+            log.info("Gabarit {} retiré", nomFichier);
+            return;
+        }
+        try (InputStream is = Files.newInputStream(fichier)) {
+            registreGabaritsService.installer(code, GabaritRecu.compiler(is));
+            log.info("Gabarit {} chargé", nomFichier);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Gabarit {} illisible, gabarit précédent conservé : {}", nomFichier, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void arreter() throws IOException {
+        if (surveillance != null) surveillance.close();
+        if (thread != null) thread.interrupt();
+        if (dossier != null) registreGabaritsService.retirerTout();
+    }
+}
@@ -0,0 +1,293 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.Smtd.GestionPerteDoc.config.MetriquesConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connexions SMTP longues, partagées entre les envois.
+ *
+ * JavaMailSender.send ouvre une session SMTP (et STARTTLS) par message : ici une connexion
+ * authentifiée est gardée et réutilisée pour plusieurs messages, puis renouvelée après un
+ * nombre de messages ou une période d'inactivité (le serveur finit par la couper).
+ *
+ * Protections en cas de panne du serveur :
+ * - cloisonnement : au plus tailleMax envois simultanés, les autres appelants attendent
+ *   brièvement puis échouent ;
+ * - disjoncteur : après seuilEchecs échecs consécutifs, les envois échouent immédiatement
+ *   pendant delaiOuvertureMs, puis un seul envoi d'essai décide de la reprise.
+ */
+@Service
+@Slf4j
+public class TransportSmtpService {
+
+    private enum EtatCircuit { FERME, OUVERT, SEMI_OUVERT }
+
+    private static final class Connexion {
+        final Transport transport;
+        int messages;
+        long dernierUsage;
+
+        Connexion(Transport transport) {
+            this.transport = transport;
+            this.dernierUsage = System.currentTimeMillis();
+        }
+    }
+
+    private final JavaMailSenderImpl mailSender;
+    private final int messagesParConnexion;
+    private final long inactiviteMaxMs;
+    private final long attenteMs;
+    private final int seuilEchecs;
+    private final long delaiOuvertureMs;
+
+    private final Semaphore cloison;
+    // Connexions libres, la plus récemment utilisée en tête
+    private final ArrayDeque<Connexion> libres = new ArrayDeque<>();
+
+    // ---- Disjoncteur (sous verrou de this) ----
+    private EtatCircuit etat = EtatCircuit.FERME;
+    private int echecsConsecutifs;
+    private long ouvertJusqua;
+    private boolean essaiEnCours;
+
+    private final Counter succes;
+    private final Counter erreurs;
+    private final Counter rejets;
+    private final Counter connexions;
+
+    public TransportSmtpService(JavaMailSenderImpl mailSender,
+                                MeterRegistry meterRegistry,
+                                @Value("${gestionpertedoc.app.smtp.tailleMax:2}") int tailleMax,
+                                @Value("${gestionpertedoc.app.smtp.messagesParConnexion:100}") int messagesParConnexion,
+                                @Value("${gestionpertedoc.app.smtp.inactiviteMaxMs:60000}") long inactiviteMaxMs,
+                                @Value("${gestionpertedoc.app.smtp.attenteMs:2000}") long attenteMs,
+                                @Value("${gestionpertedoc.app.smtp.seuilEchecs:5}") int seuilEchecs,
+                                @Value("${gestionpertedoc.app.smtp.delaiOuvertureMs:30000}") long delaiOuvertureMs) {
+        this.mailSender = mailSender;
+        this.messagesParConnexion = messagesParConnexion;
+        this.inactiviteMaxMs = inactiviteMaxMs;
+        this.attenteMs = attenteMs;
+        this.seuilEchecs = seuilEchecs;
+        this.delaiOuvertureMs = delaiOuvertureMs;
+        this.cloison = new Semaphore(tailleMax, true);
+
+        this.succes = compteur(meterRegistry, "succes");
+        this.erreurs = compteur(meterRegistry, "erreur");
+        this.rejets = compteur(meterRegistry, "rejete");
+        this.connexions = Counter.builder("gestionpertedoc.smtp.connexions")
+                .description("Connexions SMTP ouvertes").register(meterRegistry);
+        // 0 : fermé, 1 : ouvert, 2 : semi-ouvert
+        Gauge.builder("gestionpertedoc.smtp.circuit", this, t -> t.etat().ordinal()).register(meterRegistry);
+    }
+
+    /**
+     * Message lié à la session du JavaMailSender (encodage et propriétés spring.mail.*).
+     */
+    public MimeMessage creerMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    /**
+     * Faux si le disjoncteur est ouvert : un envoi échouerait immédiatement.
+     */
+    public synchronized boolean disponible() {
+        return etat != EtatCircuit.OUVERT || System.currentTimeMillis() >= ouvertJusqua;
+    }
+
+    public void envoyer(MimeMessage message) throws MessagingException {
+        message.saveChanges();
+        autoriser();
+        boolean compte = false;
+        try {
+            if (!cloison.tryAcquire(attenteMs, TimeUnit.MILLISECONDS)) {
+                rejets.increment();
+                // Pas un échec du serveur : l'essai éventuel est rendu sans verdict
+                liberer();
+                throw new MessagingException("Trop d'envois SMTP simultanés");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            liberer();
+            throw new MessagingException("Envoi SMTP interrompu", e);
+        }
+        try {
+            envoyerSurConnexion(message);
+            compte = true;
+            succes.increment();
+            enregistrerSucces();
+        } catch (SendFailedException e) {
+            // Adresse refusée : le serveur répond, le circuit n'est pas en cause
+            compte = true;
+            erreurs.increment();
+            enregistrerSucces();
+            throw e;
+        } catch (MessagingException | RuntimeException e) {
+            compte = true;
+            erreurs.increment();
+            enregistrerEchec();
+            throw e;
+        } finally {
+            cloison.release();
+            if (!compte) liberer();
+        }
+    }
+
+    // Réutilise une connexion libre ; si elle a été coupée par le serveur, un second essai
+    // se fait sur une connexion neuve
+    private void envoyerSurConnexion(MimeMessage message) throws MessagingException {
+        Connexion connexion = prendreConnexion();
+        boolean reutilisee = connexion != null;
+        if (connexion == null) connexion = ouvrirConnexion();
+        try {
+            connexion.transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException e) {
+            rendreConnexion(connexion);
+            throw e;
+        } catch (MessagingException e) {
+            fermer(connexion);
+            if (!reutilisee) throw e;
+            log.debug("Connexion SMTP réutilisée refusée ({}), nouvelle connexion", e.getMessage());
+            connexion = ouvrirConnexion();
+            try {
+                connexion.transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e2) {
+                fermer(connexion);
+                throw e2;
+            }
+        }
+        connexion.messages++;
+        connexion.dernierUsage = System.currentTimeMillis();
+        rendreConnexion(connexion);
+    }
+
+    private Connexion prendreConnexion() {
+        List<Connexion> perimees = new ArrayList<>();
+        Connexion trouvee = null;
+        synchronized (libres) {
+            long maintenant = System.currentTimeMillis();
+            while (!libres.isEmpty()) {
+                Connexion c = libres.pollFirst();
+                if (maintenant - c.dernierUsage < inactiviteMaxMs && c.transport.isConnected()) {
+                    trouvee = c;
+                    break;
+                }
+                perimees.add(c);
+            }
+        }
+        perimees.forEach(this::fermer);
+        return trouvee;
+    }
+
+    private void rendreConnexion(Connexion connexion) {
+        if (connexion.messages >= messagesParConnexion) {
+            fermer(connexion);
+            return;
+        }
+        synchronized (libres) {
+            libres.addFirst(connexion);
+        }
+    }
+
+    private Connexion ouvrirConnexion() throws MessagingException {
+        // Même choix de protocole que JavaMailSenderImpl
+        Session session = mailSender.getSession();
+        String protocole = mailSender.getProtocol();
+        if (protocole == null) protocole = session.getProperty("mail.transport.protocol");
+        if (protocole == null) protocole = JavaMailSenderImpl.DEFAULT_PROTOCOL;
+        Transport transport = session.getTransport(protocole);
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        connexions.increment();
+        return new Connexion(transport);
+    }
+
+    private void fermer(Connexion connexion) {
+        try {
+            connexion.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Fermeture de connexion SMTP : {}", e.getMessage());
+        }
+    }
+
+    // ---------------- Disjoncteur ----------------
+    private synchronized void autoriser() throws MessagingException {
+        if (etat == EtatCircuit.OUVERT) {
+            if (System.currentTimeMillis() < ouvertJusqua) {
+                rejets.increment();
+                throw new MessagingException("Serveur SMTP indisponible (circuit ouvert)");
+            }
+            etat = EtatCircuit.SEMI_OUVERT;
+        }
+        if (etat == EtatCircuit.SEMI_OUVERT) {
+            // Un seul envoi d'essai à la fois
+            if (essaiEnCours) {
+                rejets.increment();
+                throw new MessagingException("Serveur SMTP indisponible (essai en cours)");
+            }
+            essaiEnCours = true;
+        }
+    }
+
+    // Envoi abandonné avant d'atteindre le serveur
+    private synchronized void liberer() {
+        essaiEnCours = false;
+    }
+
+    private synchronized void enregistrerSucces() {
+        if (etat != EtatCircuit.FERME) log.info("Serveur SMTP de nouveau joignable, circuit fermé");
+        etat = EtatCircuit.FERME;
+        echecsConsecutifs = 0;
+        essaiEnCours = false;
+    }
+
+    private synchronized void enregistrerEchec() {
+        essaiEnCours = false;
+        echecsConsecutifs++;
+        if (etat == EtatCircuit.SEMI_OUVERT || echecsConsecutifs >= seuilEchecs) {
+            if (etat != EtatCircuit.OUVERT) {
+                log.warn("Serveur SMTP injoignable ({} échecs consécutifs), circuit ouvert pour {} ms",
+                        echecsConsecutifs, delaiOuvertureMs);
+            }
+            etat = EtatCircuit.OUVERT;
+            ouvertJusqua = System.currentTimeMillis() + delaiOuvertureMs;
+        }
+    }
+
+    private synchronized EtatCircuit etat() {
+        return etat;
+    }
+
+    @PreDestroy
+    void fermerConnexions() {
+        List<Connexion> aFermer;
+        synchronized (libres) {
+            aFermer = new ArrayList<>(libres);
+            libres.clear();
+        }
+        aFermer.forEach(this::fermer);
+    }
+
+    private static Counter compteur(MeterRegistry meterRegistry, String resultat) {
+        return Counter.builder("gestionpertedoc.smtp.envoi")
+                .tag(MetriquesConfig.TAG_RESULTAT, resultat).register(meterRegistry);
+    }
+}
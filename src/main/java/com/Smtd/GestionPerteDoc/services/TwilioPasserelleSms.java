@@ -0,0 +1,61 @@
+package com.Smtd.GestionPerteDoc.services;
+
+import com.twilio.exception.ApiException;
+import com.twilio.http.TwilioRestClient;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+
+/**
+ * Envoi par l'API REST de Twilio.
+ *
+ * Un seul client pour l'application (pool HTTP partagé, thread-safe) plutôt que
+ * Twilio.init, qui configure un client global.
+ */
+@Service
+@ConditionalOnProperty(name = "gestionpertedoc.app.sms.fournisseur", havingValue = "twilio")
+public class TwilioPasserelleSms implements PasserelleSms {
+
+    // Erreurs Twilio qui tiennent au message lui-même : aucun nouvel essai n'aboutira
+    private static final Set<Integer> ERREURS_MESSAGE = Set.of(
+            21211, // numéro destinataire invalide
+            21602, // corps du message vide
+            21610, // destinataire désabonné (STOP)
+            21612, // numéro destinataire injoignable depuis l'expéditeur
+            21614, // numéro destinataire qui n'est pas un mobile
+            21617  // corps du message trop long
+    );
+
+    private final TwilioRestClient client;
+    private final PhoneNumber expediteur;
+
+    public TwilioPasserelleSms(@Value("${gestionpertedoc.app.sms.twilio.accountSid:}") String accountSid,
+                               @Value("${gestionpertedoc.app.sms.twilio.authToken:}") String authToken,
+                               @Value("${gestionpertedoc.app.sms.twilio.expediteur:}") String expediteur) {
+        if (accountSid.isBlank() || authToken.isBlank() || expediteur.isBlank()) {
+            throw new IllegalStateException("Configuration Twilio incomplète (accountSid, authToken, expediteur)");
+        }
+        this.client = new TwilioRestClient.Builder(accountSid, authToken).build();
+        this.expediteur = new PhoneNumber(expediteur);
+    }
+
+    @Override
+    public String envoyer(String numero, String texte) throws Exception {
+        try {
+            return Message.creator(new PhoneNumber(numero), expediteur, texte).create(client).getSid();
+        } catch (ApiException e) {
+            // Seul un 400 portant une erreur propre au message est définitif ; 401/403 (identifiants,
+            // compte suspendu), 429 et 5xx sont retentés sans abandonner les SMS en file
+            Integer statut = e.getStatusCode();
+            if (statut != null && statut == 400 && e.getCode() != null && ERREURS_MESSAGE.contains(e.getCode())) {
+                throw new SmsRefuseException("Twilio " + e.getCode() + " : " + e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.Smtd.GestionPerteDoc.repositories.DeclarationRepository;
 import com.Smtd.GestionPerteDoc.repositories.PostePoliceRepository;
 import com.Smtd.GestionPerteDoc.repositories.RoleRepository;
 import com.Smtd.GestionPerteDoc.repositories.UtilisateurRepository;
+import com.Smtd.GestionPerteDoc.security.services.RevocationJetonService;
 import lombok.RequiredArgsConstructor;
 import lombok.val;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -35,7 +36,8 @@ public class UtilisateurService {
     private final RoleRepository roleRepository;
     private final PostePoliceRepository postePoliceRepository;
     private final PasswordEncoder passwordEncoder;
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutboxService;
+    private final RevocationJetonService revocationJetonService;
     private final DeclarationRepository declarationRepository;
 
     // ===================== MOT DE PASSE TEMPORAIRE =====================
@@ -101,16 +103,12 @@ public class UtilisateurService {
         utilisateur.setResetToken(resetToken);
         utilisateur.setResetPasswordExpires(LocalDateTime.now().plusHours(48));
 
-        // ===================== Envoyer email =====================
-        try {
-            emailService.envoyerEmailMotDePasseTemporaire(
-                    utilisateur.getEmail(),
-                    motDePasseTemp,
-                    resetToken
-            );
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur envoi email: " + e.getMessage());
-        }
+        // ===================== Mettre l'email en file =====================
+        emailOutboxService.planifierMotDePasseTemporaire(
+                utilisateur.getEmail(),
+                motDePasseTemp,
+                resetToken
+        );
 
         // ===================== Sauvegarder =====================
         return utilisateurRepository.save(utilisateur);
@@ -160,6 +158,7 @@ public class UtilisateurService {
         utilisateur.setActif(true);
         utilisateur.setRoles(roles);
         genererMatriculeDefinitif(utilisateur, roles);
+        revoquerJetons(utilisateur);
 
         return utilisateurRepository.save(utilisateur);
     }
@@ -172,6 +171,7 @@ public class UtilisateurService {
         utilisateur.setMotDePasseHash(passwordEncoder.encode(nouveauMotDePasse));
         utilisateur.setActif(true);
         utilisateur.setResetToken(null);
+        revoquerJetons(utilisateur);
         utilisateurRepository.save(utilisateur);
     }
 
@@ -188,6 +188,7 @@ public class UtilisateurService {
         }
 
         utilisateur.setActif(false);
+        revoquerJetons(utilisateur);
         utilisateurRepository.save(utilisateur);
     }
 
@@ -203,12 +204,8 @@ public class UtilisateurService {
         utilisateur.setResetPasswordExpires(LocalDateTime.now().plusHours(48));
         utilisateurRepository.save(utilisateur);
 
-        //  Envoyer l'email avec le token
-        try {
-            emailService.envoyerEmailMotDePasseOublie(utilisateur.getEmail(), token);
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de réinitialisation", e);
-        }
+        //  Mettre en file l'email avec le token
+        emailOutboxService.planifierMotDePasseOublie(utilisateur.getEmail(), token);
     }
 
 
@@ -239,6 +236,9 @@ public class UtilisateurService {
         genererMatriculeDefinitif(ancienAdmin, ancienAdmin.getRoles());
         genererMatriculeDefinitif(nouveauAdmin, nouveauAdmin.getRoles());
 
+        revoquerJetons(ancienAdmin);
+        revoquerJetons(nouveauAdmin);
+
         utilisateurRepository.save(ancienAdmin);
         return utilisateurRepository.save(nouveauAdmin);
     }
@@ -259,7 +259,12 @@ public class UtilisateurService {
         }
 
         verifierSuperviseurUniquePourUpdate(postePoliceId, roles, utilisateurId);
+        Long ancienPosteId = existant.getPostePolice() != null ? existant.getPostePolice().getId() : null;
         mettreAJourChampsUtilisateur(existant, utilisateurDetails, poste, roles);
+        if (!postePoliceId.equals(ancienPosteId)) {
+            declarationRepository.reaffecterPoste(utilisateurId, postePoliceId);
+        }
+        revoquerJetons(existant);
 
         return utilisateurRepository.save(existant);
     }
@@ -335,6 +340,7 @@ public class UtilisateurService {
         // Marquer comme supprimé et désactiver
         utilisateur.setIsDeleted(true);
         utilisateur.setActif(false);
+        revoquerJetons(utilisateur);
 
         utilisateurRepository.save(utilisateur);
     }
@@ -355,6 +361,7 @@ public class UtilisateurService {
 
         // Maintenant, supprimer l'utilisateur
         utilisateurRepository.delete(utilisateur);
+        revocationJetonService.invalider(utilisateur.getId());
     }
 
     public Utilisateur findByEmail(String email) {
@@ -460,6 +467,7 @@ public class UtilisateurService {
             Set<Role> roles = new HashSet<>(roleRepository.findAllById(roleIds));
             utilisateur.setRoles(roles);
         }
+        revoquerJetons(utilisateur);
 
         utilisateurRepository.save(utilisateur);
 
@@ -478,6 +486,12 @@ public class UtilisateurService {
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé : " + email));
     }
 
+    // Les jetons déjà émis portent d'anciens rôles/poste : ils ne sont plus acceptés
+    private void revoquerJetons(Utilisateur utilisateur) {
+        utilisateur.setJetonsRevoquesLe(LocalDateTime.now());
+        revocationJetonService.invalider(utilisateur.getId());
+    }
+
     public boolean existeAdmin() {
         return utilisateurRepository.countByRolesLibelle("ROLE_ADMIN") > 0;
     }
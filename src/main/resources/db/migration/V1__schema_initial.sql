@@ -0,0 +1,115 @@
+-- =====================================================================
+-- V1 : schéma de référence, tel que produit par hibernate.ddl-auto=update
+-- avant le passage à Flyway (noms de contraintes identiques, pour qu'une
+-- base existante puisse être "baselinée" en version 1 sans écart). Les
+-- contraintes uniques, déclarées en ligne par Hibernate, portent le nom
+-- attribué par PostgreSQL. Vérifié par MigrationsFlywayTests contre le
+-- script généré par Hibernate (src/test/resources/db/schema_avant_flyway.sql).
+-- Ne plus modifier : toute évolution va dans une migration suivante.
+-- =====================================================================
+
+-- ---------------- Référentiels ----------------
+CREATE TABLE postes_police (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    actif       BOOLEAN      NOT NULL,
+    telephone   VARCHAR(20),
+    code_unique VARCHAR(50)  NOT NULL,
+    nom         VARCHAR(150) NOT NULL,
+    adresse     VARCHAR(255) NOT NULL,
+    CONSTRAINT postes_police_pkey PRIMARY KEY (id),
+    CONSTRAINT postes_police_code_unique_key UNIQUE (code_unique)
+);
+
+CREATE TABLE roles (
+    id      BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    libelle VARCHAR(100) NOT NULL,
+    CONSTRAINT roles_pkey PRIMARY KEY (id),
+    CONSTRAINT roles_libelle_key UNIQUE (libelle)
+);
+
+CREATE TABLE types_document (
+    id                    BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    code_type_document    VARCHAR(255) NOT NULL,
+    libelle_type_document VARCHAR(255) NOT NULL,
+    CONSTRAINT types_document_pkey PRIMARY KEY (id),
+    CONSTRAINT types_document_code_type_document_key UNIQUE (code_type_document)
+);
+
+-- ---------------- Utilisateurs ----------------
+CREATE TABLE utilisateurs (
+    id                     BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    actif                  BOOLEAN      NOT NULL,
+    is_deleted             BOOLEAN      NOT NULL,
+    poste_id               BIGINT       NOT NULL,
+    reset_password_expires TIMESTAMP(6),
+    matricule              VARCHAR(50)  NOT NULL,
+    nom                    VARCHAR(100) NOT NULL,
+    prenom                 VARCHAR(100) NOT NULL,
+    email                  VARCHAR(150) NOT NULL,
+    mot_de_passe_hash      VARCHAR(255) NOT NULL,
+    reset_token            VARCHAR(255),
+    CONSTRAINT utilisateurs_pkey PRIMARY KEY (id),
+    CONSTRAINT utilisateurs_matricule_key UNIQUE (matricule),
+    CONSTRAINT utilisateurs_email_key UNIQUE (email),
+    CONSTRAINT fklyhubyioxeg6yx1irkyly9if FOREIGN KEY (poste_id) REFERENCES postes_police
+);
+
+CREATE TABLE utilisateur_role (
+    role_id        BIGINT NOT NULL,
+    utilisateur_id BIGINT NOT NULL,
+    CONSTRAINT utilisateur_role_pkey PRIMARY KEY (utilisateur_id, role_id),
+    CONSTRAINT fkmda2kyc94w9467td7ikoqnaun FOREIGN KEY (role_id) REFERENCES roles,
+    CONSTRAINT fkp0qoh4jgf02pqu2g4iyr22h50 FOREIGN KEY (utilisateur_id) REFERENCES utilisateurs
+);
+
+-- ---------------- Déclarants et déclarations ----------------
+CREATE TABLE declarants (
+    id                 UUID         NOT NULL,
+    date_naissance     DATE,
+    telephone          VARCHAR(20)  NOT NULL,
+    nom                VARCHAR(100) NOT NULL,
+    prenom             VARCHAR(100) NOT NULL,
+    email              VARCHAR(150),
+    adresse            VARCHAR(255) NOT NULL,
+    lieu_naissance     VARCHAR(255),
+    num_carte_identite VARCHAR(255),
+    num_nina           VARCHAR(255),
+    num_passeport      VARCHAR(255),
+    CONSTRAINT declarants_pkey PRIMARY KEY (id),
+    CONSTRAINT declarants_telephone_key UNIQUE (telephone),
+    CONSTRAINT declarants_email_key UNIQUE (email),
+    CONSTRAINT declarants_num_carte_identite_key UNIQUE (num_carte_identite),
+    CONSTRAINT declarants_num_nina_key UNIQUE (num_nina),
+    CONSTRAINT declarants_num_passeport_key UNIQUE (num_passeport)
+);
+
+CREATE TABLE declarations (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    date_declaration DATE         NOT NULL,
+    date_perte       DATE,
+    supprime         BOOLEAN      NOT NULL,
+    cree_le          TIMESTAMP(6) NOT NULL,
+    cree_par_id      BIGINT,
+    modifie_le       TIMESTAMP(6),
+    modifie_par_id   BIGINT,
+    supprime_le      TIMESTAMP(6),
+    supprime_par_id  BIGINT,
+    type_document_id BIGINT       NOT NULL,
+    utilisateur_id   BIGINT,
+    declarant_id     UUID         NOT NULL,
+    statut           VARCHAR(20)  NOT NULL,
+    numero_reference VARCHAR(50)  NOT NULL,
+    numero_document  VARCHAR(100),
+    circonstances    VARCHAR(500),
+    lieu_perte       VARCHAR(255),
+    CONSTRAINT declarations_pkey PRIMARY KEY (id),
+    CONSTRAINT declarations_numero_reference_key UNIQUE (numero_reference),
+    CONSTRAINT declarations_statut_check
+        CHECK (statut IN ('BROUILLON', 'ENREGISTREE', 'VALIDEE', 'REJETEE', 'SUPPRIME')),
+    CONSTRAINT fk2v0vnf1ygmp3n6abcccfk7ry2 FOREIGN KEY (declarant_id) REFERENCES declarants,
+    CONSTRAINT fk25h9s29oue856gnfcxa6tu9b5 FOREIGN KEY (type_document_id) REFERENCES types_document,
+    CONSTRAINT fkfi221lb2tg5gq446hdu0tkuyb FOREIGN KEY (utilisateur_id) REFERENCES utilisateurs,
+    CONSTRAINT fk5cnvjpiomt1f2yokq17s4vw7q FOREIGN KEY (cree_par_id) REFERENCES utilisateurs,
+    CONSTRAINT fk44upsrde28lqy4iw8f9lnmfo2 FOREIGN KEY (modifie_par_id) REFERENCES utilisateurs,
+    CONSTRAINT fkqnwm4odunc4i5e6y1gx7ncn2v FOREIGN KEY (supprime_par_id) REFERENCES utilisateurs
+);
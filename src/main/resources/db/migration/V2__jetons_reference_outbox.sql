@@ -0,0 +1,48 @@
+-- =====================================================================
+-- V2 : évolutions du schéma depuis la référence V1.
+-- Une base mise à jour un temps par ddl-auto=update peut déjà contenir
+-- certains de ces objets : chaque instruction est donc idempotente.
+-- =====================================================================
+
+-- ---------------- Utilisateurs ----------------
+-- Les jetons émis avant cette date sont refusés (rôles, poste ou mot de passe modifiés)
+ALTER TABLE utilisateurs ADD COLUMN IF NOT EXISTS jetons_revoques_le TIMESTAMP(6);
+
+-- Agents d'un poste (statistiques et listes par poste)
+CREATE INDEX IF NOT EXISTS idx_utilisateurs_poste ON utilisateurs (poste_id);
+
+-- ---------------- Déclarations ----------------
+-- Pagination par curseur : filtre (utilisateur, supprime) puis tri (cree_le, id)
+CREATE INDEX IF NOT EXISTS idx_declarations_utilisateur_keyset
+    ON declarations (utilisateur_id, supprime, cree_le DESC, id DESC);
+
+-- Statistiques : index couvrant pour le GROUP BY (statut, supprime) par utilisateur ou par poste
+CREATE INDEX IF NOT EXISTS idx_declarations_stats
+    ON declarations (utilisateur_id, supprime, statut);
+
+-- Numéros de référence : un nextval réserve un bloc (le pas est réaligné au démarrage
+-- sur gestionpertedoc.app.referenceTailleBloc par NumeroReferenceService)
+CREATE SEQUENCE IF NOT EXISTS declaration_reference_seq START WITH 1 INCREMENT BY 50;
+
+-- ---------------- Outbox des emails ----------------
+CREATE TABLE IF NOT EXISTS emails_sortants (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    tentatives          INTEGER       NOT NULL,
+    cree_le             TIMESTAMP(6)  NOT NULL,
+    declaration_id      BIGINT,
+    envoye_le           TIMESTAMP(6),
+    prochaine_tentative TIMESTAMP(6)  NOT NULL,
+    statut              VARCHAR(20)   NOT NULL,
+    type                VARCHAR(30)   NOT NULL,
+    numero_reference    VARCHAR(50),
+    destinataire        VARCHAR(150)  NOT NULL,
+    derniere_erreur     VARCHAR(1000),
+    jeton               VARCHAR(255),
+    mot_de_passe_temp   VARCHAR(255),
+    CONSTRAINT emails_sortants_pkey PRIMARY KEY (id),
+    CONSTRAINT emails_sortants_statut_check CHECK (statut IN ('EN_ATTENTE', 'ENVOYE', 'ECHEC')),
+    CONSTRAINT emails_sortants_type_check
+        CHECK (type IN ('RECU_DECLARATION', 'DECLARATION_VALIDEE', 'MOT_DE_PASSE_TEMPORAIRE', 'MOT_DE_PASSE_OUBLIE'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_emails_sortants_a_envoyer ON emails_sortants (statut, prochaine_tentative);
@@ -0,0 +1,31 @@
+-- =====================================================================
+-- Index des requêtes de DeclarationRepository hors pagination par agent.
+-- Chaque index cite la requête qu'il sert ; plans avant / après mesurés
+-- sur 3 millions de déclarations dans benchmarks/sql/EXPLAIN.md.
+-- =====================================================================
+
+-- compterParStatut (tableau de bord global), countByStatutAndSupprimeTrue, findByStatut :
+-- parcours d'index seul au lieu de lire toute la table
+CREATE INDEX IF NOT EXISTS idx_declarations_statut
+    ON declarations (statut, supprime);
+
+-- findByDeclarantId, et contrôle de la clé étrangère à la suppression d'un déclarant
+CREATE INDEX IF NOT EXISTS idx_declarations_declarant
+    ON declarations (declarant_id);
+
+-- findByTypeDocumentId, et contrôle de la clé étrangère à la suppression d'un type
+CREATE INDEX IF NOT EXISTS idx_declarations_type_document
+    ON declarations (type_document_id, supprime);
+
+-- findByUtilisateurIdAndSupprimeTrue (filtre sur cree_par), et contrôle de la clé
+-- étrangère à la suppression d'un utilisateur
+CREATE INDEX IF NOT EXISTS idx_declarations_cree_par
+    ON declarations (cree_par_id, supprime);
+
+-- Contrôles de clés étrangères à la suppression d'un utilisateur : colonnes le plus
+-- souvent nulles, seules les lignes renseignées sont indexées
+CREATE INDEX IF NOT EXISTS idx_declarations_modifie_par
+    ON declarations (modifie_par_id) WHERE modifie_par_id IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_declarations_supprime_par
+    ON declarations (supprime_par_id) WHERE supprime_par_id IS NOT NULL;
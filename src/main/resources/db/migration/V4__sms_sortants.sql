@@ -0,0 +1,25 @@
+-- =====================================================================
+-- V4 : outbox des SMS (déclarants joignables seulement par téléphone).
+-- Même fonctionnement que emails_sortants : écrit dans la transaction
+-- métier, expédié en arrière-plan par SmsOutboxDispatcher.
+-- =====================================================================
+
+CREATE TABLE sms_sortants (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    tentatives          INTEGER       NOT NULL,
+    cree_le             TIMESTAMP(6)  NOT NULL,
+    envoye_le           TIMESTAMP(6),
+    prochaine_tentative TIMESTAMP(6)  NOT NULL,
+    statut              VARCHAR(20)   NOT NULL,
+    type                VARCHAR(30)   NOT NULL,
+    numero_reference    VARCHAR(50)   NOT NULL,
+    destinataire        VARCHAR(20)   NOT NULL,
+    identifiant_fournisseur VARCHAR(64),
+    derniere_erreur     VARCHAR(1000),
+    CONSTRAINT sms_sortants_pkey PRIMARY KEY (id),
+    CONSTRAINT sms_sortants_statut_check CHECK (statut IN ('EN_ATTENTE', 'ENVOYE', 'ECHEC')),
+    CONSTRAINT sms_sortants_type_check CHECK (type IN ('RECU_DECLARATION', 'DECLARATION_VALIDEE'))
+);
+
+-- Réservation des lots (verrouillerLot)
+CREATE INDEX idx_sms_sortants_a_envoyer ON sms_sortants (statut, prochaine_tentative);
@@ -0,0 +1,22 @@
+-- =====================================================================
+-- V5 : poste de l'agent recopié dans declarations.
+-- La page d'un poste (findPageByPostePoliceId) filtrait sur
+-- utilisateurs.poste_id par la jointure : aucun index ne servait le tri
+-- (cree_le, id), toutes les lignes du poste étaient lues avant le top-N.
+-- La colonne est renseignée à la création et réalignée par
+-- DeclarationRepository.reaffecterPoste quand l'agent change de poste.
+-- =====================================================================
+
+ALTER TABLE declarations ADD COLUMN poste_id BIGINT;
+
+UPDATE declarations d
+SET poste_id = u.poste_id
+FROM utilisateurs u
+WHERE u.id = d.utilisateur_id;
+
+ALTER TABLE declarations
+    ADD CONSTRAINT fk_declarations_poste FOREIGN KEY (poste_id) REFERENCES postes_police;
+
+-- Pagination par curseur d'un poste : filtre (poste, supprime) puis tri (cree_le, id)
+CREATE INDEX idx_declarations_poste_keyset
+    ON declarations (poste_id, supprime, cree_le DESC, id DESC);
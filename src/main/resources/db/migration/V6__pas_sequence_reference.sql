@@ -0,0 +1,10 @@
+-- =====================================================================
+-- V6 : pas de declaration_reference_seq fixé par migration.
+-- Le pas est la taille de bloc des références (referenceTailleBloc) :
+-- NumeroReferenceService le vérifie au démarrage et refuse de démarrer
+-- s'il diffère, au lieu de le réaligner lui-même (un noeud en cours de
+-- déploiement changeait alors le pas sous les autres).
+-- Changer la taille de bloc = nouvelle migration + redéploiement complet.
+-- =====================================================================
+
+ALTER SEQUENCE declaration_reference_seq INCREMENT BY 50;
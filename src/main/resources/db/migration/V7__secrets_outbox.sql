@@ -0,0 +1,11 @@
+-- =====================================================================
+-- V7 : secrets de l'outbox des emails.
+-- Le jeton et le mot de passe temporaire sont désormais chiffrés par
+-- l'application (SecretOutboxConverter) ; les emails encore en attente
+-- gardent leur valeur en clair jusqu'à leur envoi, relue telle quelle.
+-- =====================================================================
+
+-- Emails déjà envoyés ou abandonnés : plus aucun secret à conserver
+UPDATE emails_sortants
+SET jeton = NULL, mot_de_passe_temp = NULL
+WHERE statut <> 'EN_ATTENTE' AND (jeton IS NOT NULL OR mot_de_passe_temp IS NOT NULL);
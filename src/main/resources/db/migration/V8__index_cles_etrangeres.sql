@@ -0,0 +1,21 @@
+-- =====================================================================
+-- V8 : index de V3 sur type_document_id et cree_par_id.
+-- Les requêtes qu'ils servaient (findByTypeDocumentId, corbeille par
+-- cree_par) n'existent plus. Seuls restent les contrôles de clé étrangère,
+-- qui ne filtrent que sur la colonne référencée : la colonne supprime est
+-- retirée. Sans index, ces contrôles parcourent toute la table quand la
+-- valeur n'est pas référencée, c'est-à-dire à chaque suppression autorisée
+-- (benchmarks/sql/EXPLAIN.md, Q11 et Q12).
+-- =====================================================================
+
+DROP INDEX IF EXISTS idx_declarations_type_document;
+DROP INDEX IF EXISTS idx_declarations_cree_par;
+
+-- TypeDocumentService.supprimerTypeDocument : contrôle de la clé étrangère type_document_id
+CREATE INDEX IF NOT EXISTS idx_declarations_type_document
+    ON declarations (type_document_id);
+
+-- UtilisateurService, suppression définitive d'un utilisateur : contrôle de la clé
+-- étrangère cree_par_id (modifie_par_id et supprime_par_id : index partiels de V3)
+CREATE INDEX IF NOT EXISTS idx_declarations_cree_par
+    ON declarations (cree_par_id);
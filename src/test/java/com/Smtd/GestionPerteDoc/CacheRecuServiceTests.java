@@ -0,0 +1,128 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.entities.Declarant;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.entities.TypeDocument;
+import com.Smtd.GestionPerteDoc.services.CacheRecuService;
+import com.Smtd.GestionPerteDoc.services.RegistreGabaritsService;
+import com.Smtd.GestionPerteDoc.services.SignatureRecuService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheRecuServiceTests {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void recuRenduUneFoisPuisServiDuDisque() throws Exception {
+        CacheRecuService cache = new CacheRecuService(dossier.toString(), 256, signature(), new RegistreGabaritsService(), new SimpleMeterRegistry());
+        Declaration declaration = declaration(1L);
+
+        CacheRecuService.Recu premier = cache.obtenir(declaration);
+        CacheRecuService.Recu second = cache.obtenir(declaration);
+
+        assertSame(premier, second);
+        assertEquals(Files.size(premier.fichier()), premier.taille());
+        assertEquals("%PDF-", new String(Files.readAllBytes(premier.fichier()), 0, 5));
+
+        // Champ du récépissé modifié : nouvelle version, l'ancien fichier est remplacé
+        declaration.getDeclarant().setNom("KEITA");
+        CacheRecuService.Recu modifie = cache.obtenir(declaration);
+        assertNotEquals(premier.fichier(), modifie.fichier());
+        assertFalse(Files.exists(premier.fichier()));
+
+        cache.invalider(1L);
+        assertFalse(Files.exists(modifie.fichier()));
+    }
+
+    @Test
+    void evictionEtRepriseAuDemarrage() throws Exception {
+        // Limite nulle : seul le dernier récépissé servi est gardé
+        CacheRecuService cache = new CacheRecuService(dossier.toString(), 0, signature(), new RegistreGabaritsService(), new SimpleMeterRegistry());
+        CacheRecuService.Recu ancien = cache.obtenir(declaration(1L));
+        CacheRecuService.Recu recent = cache.obtenir(declaration(2L));
+
+        assertFalse(Files.exists(ancien.fichier()));
+        assertTrue(Files.exists(recent.fichier()));
+
+        // Nouveau noeud sur le même dossier : l'index est relu depuis les noms de fichiers
+        CacheRecuService reprise = new CacheRecuService(dossier.toString(), 256, signature(), new RegistreGabaritsService(), new SimpleMeterRegistry());
+        assertEquals(recent, reprise.obtenir(declaration(2L)));
+    }
+
+    @Test
+    void recuOuvertResisteASuppression() throws Exception {
+        CacheRecuService cache = new CacheRecuService(dossier.toString(), 256, signature(), new RegistreGabaritsService(), new SimpleMeterRegistry());
+        Declaration declaration = declaration(3L);
+
+        // Fichier supprimé entre obtenir() et l'ouverture : nouveau rendu au lieu d'une erreur
+        Files.delete(cache.obtenir(declaration).fichier());
+        try (CacheRecuService.RecuOuvert ouvert = cache.ouvrir(declaration)) {
+            assertEquals(ouvert.recu().taille(), ouvert.canal().size());
+
+            // Invalidé une fois ouvert : le canal reste lisible jusqu'au bout
+            cache.invalider(3L);
+            assertFalse(Files.exists(ouvert.recu().fichier()));
+            java.nio.ByteBuffer debut = java.nio.ByteBuffer.allocate(5);
+            ouvert.canal().read(debut, 0);
+            assertEquals("%PDF-", new String(debut.array(), java.nio.charset.StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void jetonSigneVerifieSansBase() throws Exception {
+        SignatureRecuService signature = signature();
+        String jeton = signature.jeton(declaration(7L));
+
+        SignatureRecuService.RecuVerifie recu = signature.verifier(jeton).orElseThrow();
+        assertEquals("DECL-POSTE-001-2026-000007", recu.numeroReference());
+        assertEquals(7L, recu.declarationId());
+        assertEquals("Passeport", recu.typeDocument());
+
+        // Contenu altéré, jeton mal formé ou signé par une autre clé : refusé
+        String altere = signature.jeton(declaration(8L)).split("\\.")[0] + jeton.substring(jeton.indexOf('.'));
+        assertTrue(signature.verifier(altere).isEmpty());
+        assertTrue(signature.verifier("pas-un-jeton").isEmpty());
+        assertTrue(new SignatureRecuService("autre-cle", "", 10).verifier(jeton).isEmpty());
+
+        // Image QR générée une fois par déclaration
+        assertSame(signature.qrCode(7L, jeton), signature.qrCode(7L, jeton));
+    }
+
+    private static SignatureRecuService signature() {
+        return new SignatureRecuService("cle-test", "", 10);
+    }
+
+    private static Declaration declaration(Long id) {
+        Declarant declarant = new Declarant();
+        declarant.setId(UUID.randomUUID());
+        declarant.setNom("DIOP");
+        declarant.setPrenom("Fatou");
+        declarant.setTelephone("+22370000003");
+        declarant.setEmail("fatou.diop@test.com");
+        declarant.setAdresse("Rue Bamako 123");
+
+        TypeDocument type = new TypeDocument();
+        type.setId(1L);
+        type.setLibelleTypeDocument("Passeport");
+
+        Declaration declaration = new Declaration();
+        declaration.setId(id);
+        declaration.setNumeroReference("DECL-POSTE-001-2026-" + String.format("%06d", id));
+        declaration.setDeclarant(declarant);
+        declaration.setTypeDocument(type);
+        declaration.setNumeroDocument("P1234567");
+        declaration.setDatePerte(new Date());
+        declaration.setCreeLe(new Date());
+        return declaration;
+    }
+}
@@ -0,0 +1,140 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.entities.EmailSortant;
+import com.Smtd.GestionPerteDoc.enums.StatutEmail;
+import com.Smtd.GestionPerteDoc.enums.TypeEmail;
+import com.Smtd.GestionPerteDoc.repositories.EmailSortantRepository;
+import com.Smtd.GestionPerteDoc.services.EmailOutboxDispatcher;
+import com.Smtd.GestionPerteDoc.services.EmailOutboxService;
+import jakarta.mail.Address;
+import jakarta.mail.Multipart;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// L'outbox est expédiée à la main : le passage planifié ne tourne qu'au démarrage
+@SpringBootTest(properties = "gestionpertedoc.app.outbox.intervalleMs=3600000")
+public class EmailOutboxDispatcherTests {
+
+    private static ServeurSmtpFactice serveur;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Autowired
+    private EmailSortantRepository emailSortantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void smtpLocal(DynamicPropertyRegistry registry) throws IOException {
+        serveur = new ServeurSmtpFactice();
+        registry.add("spring.mail.host", () -> "localhost");
+        registry.add("spring.mail.port", serveur::port);
+        registry.add("spring.mail.properties.mail.smtp.auth", () -> "false");
+        registry.add("spring.mail.properties.mail.smtp.starttls.enable", () -> "false");
+    }
+
+    @AfterAll
+    static void arreter() throws IOException {
+        serveur.close();
+    }
+
+    @Test
+    void notificationsRegroupeesMotDePasseSeul() throws Exception {
+        String destinataire = "declarant-" + UUID.randomUUID() + "@test.com";
+        emailOutboxService.planifierDeclarationValidee(destinataire, "REF-A");
+        emailOutboxService.planifierMotDePasseOublie(destinataire, "jeton-reinitialisation");
+        emailOutboxService.planifierDeclarationValidee(destinataire, "REF-B");
+
+        // Fenêtre de regroupement écoulée ; le mot de passe passe après les notifications, encore
+        // en attente quand elles sont regroupées : seul le filtre sur le type l'écarte du groupe
+        long maintenant = System.currentTimeMillis();
+        echeance(destinataire, TypeEmail.DECLARATION_VALIDEE, maintenant - 2_000);
+        echeance(destinataire, TypeEmail.MOT_DE_PASSE_OUBLIE, maintenant - 1_000);
+        // Jeton chiffré en base tant que l'email attend
+        assertFalse(jetonEnBase(destinataire).contains("jeton-reinitialisation"));
+
+        long regroupesAvant = emailOutboxDispatcher.compteurs().get("regroupes");
+        for (int passage = 0; passage < 20 && !emails(destinataire).stream()
+                .allMatch(e -> e.getStatut() == StatutEmail.ENVOYE); passage++) {
+            emailOutboxDispatcher.expedier();
+        }
+
+        assertTrue(emails(destinataire).stream().allMatch(e -> e.getStatut() == StatutEmail.ENVOYE));
+        assertNull(jetonEnBase(destinataire));
+        assertEquals(regroupesAvant + 1, emailOutboxDispatcher.compteurs().get("regroupes"));
+
+        // Deux notifications au même déclarant : un seul message ; le mot de passe part à part
+        List<MimeMessage> recus = recusPar(destinataire);
+        assertEquals(2, recus.size());
+        // Fragments ASCII : les accents dépendent du jeu de caractères par défaut de la JVM
+        MimeMessage recapitulatif = recus.stream()
+                .filter(m -> sujet(m).startsWith("Suivi de vos d")).findFirst().orElseThrow();
+        String texte = (String) recapitulatif.getContent();
+        assertTrue(texte.contains("REF-A") && texte.contains("REF-B"));
+        MimeMessage motDePasse = recus.stream()
+                .filter(m -> sujet(m).contains("mot de passe")).findFirst().orElseThrow();
+        // Jeton déchiffré à l'envoi
+        assertTrue(texte(motDePasse.getContent()).contains("jeton-reinitialisation"));
+    }
+
+    private String jetonEnBase(String destinataire) {
+        return jdbcTemplate.queryForObject("SELECT jeton FROM emails_sortants WHERE destinataire = ? AND type = ?",
+                String.class, destinataire, TypeEmail.MOT_DE_PASSE_OUBLIE.name());
+    }
+
+    private void echeance(String destinataire, TypeEmail type, long echeanceMs) {
+        jdbcTemplate.update("UPDATE emails_sortants SET prochaine_tentative = ? WHERE destinataire = ? AND type = ?",
+                new Timestamp(echeanceMs), destinataire, type.name());
+    }
+
+    private List<EmailSortant> emails(String destinataire) {
+        return emailSortantRepository.findAll().stream()
+                .filter(e -> destinataire.equals(e.getDestinataire())).toList();
+    }
+
+    private static List<MimeMessage> recusPar(String destinataire) throws Exception {
+        List<MimeMessage> recus = new ArrayList<>();
+        for (MimeMessage message : serveur.recus()) {
+            Address[] destinataires = message.getAllRecipients();
+            if (destinataires != null && destinataires[0].toString().equals(destinataire)) recus.add(message);
+        }
+        return recus;
+    }
+
+    // Texte d'un message, parties imbriquées comprises
+    private static String texte(Object contenu) throws Exception {
+        if (contenu instanceof Multipart parties) {
+            StringBuilder texte = new StringBuilder();
+            for (int i = 0; i < parties.getCount(); i++) texte.append(texte(parties.getBodyPart(i).getContent()));
+            return texte.toString();
+        }
+        return contenu instanceof String s ? s : "";
+    }
+
+    private static String sujet(MimeMessage message) {
+        try {
+            return message.getSubject();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
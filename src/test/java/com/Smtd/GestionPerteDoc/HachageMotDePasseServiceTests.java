@@ -0,0 +1,48 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.security.services.HachageMotDePasseService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HachageMotDePasseServiceTests {
+
+    @Test
+    void hachageVerificationEtChangementDeCout() {
+        HachageMotDePasseService hachage = service(5, 1, 4, 5000);
+
+        String hash = hachage.encode("123456");
+        assertTrue(hash.startsWith("$2a$05$"));
+        assertTrue(hachage.matches("123456", hash));
+        assertFalse(hachage.matches("654321", hash));
+
+        // Hash d'un coût plus faible : à recalculer à la connexion ; plus élevé : conservé
+        assertFalse(hachage.upgradeEncoding(hash));
+        assertTrue(hachage.upgradeEncoding(new BCryptPasswordEncoder(4).encode("123456")));
+        assertFalse(hachage.upgradeEncoding(new BCryptPasswordEncoder(6).encode("123456")));
+        assertFalse(hachage.upgradeEncoding("pas-un-hash-bcrypt"));
+    }
+
+    @Test
+    void attenteDepasseeRefuseeSansBloquer() {
+        // Coût 14 : plusieurs centaines de millisecondes, bien au-delà de l'attente autorisée
+        HachageMotDePasseService hachage = service(14, 1, 1, 5);
+
+        long debut = System.nanoTime();
+        assertThrows(HachageMotDePasseService.HachageSatureException.class, () -> hachage.encode("123456"));
+        assertTrue(System.nanoTime() - debut < 1_000_000_000L);
+    }
+
+    @Test
+    void coutCalibre() {
+        HachageMotDePasseService hachage = service(0, 1, 4, 5000);
+        assertTrue(hachage.cout() >= 4 && hachage.cout() <= 8);
+    }
+
+    private static HachageMotDePasseService service(int cout, int threads, int file, long attenteMaxMs) {
+        // Calibrage entre les coûts 4 et 8, cible 5 ms
+        return new HachageMotDePasseService(new SimpleMeterRegistry(), cout, 5, 4, 8, threads, file, attenteMaxMs);
+    }
+}
@@ -1,6 +1,8 @@
 package com.Smtd.GestionPerteDoc;
 
+import com.Smtd.GestionPerteDoc.services.PasserelleSmsLocale;
 import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -11,6 +13,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -22,6 +25,12 @@ public class IntegrationTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PasserelleSmsLocale passerelleSms;
+
     private String adminToken;
 
     @BeforeAll
@@ -73,6 +82,14 @@ public class IntegrationTests {
 
         System.out.println(" Déclaration créée ID = " + declarationId);
 
+        //  Récépissé rendu en arrière-plan après la validation de la transaction
+        long limite = System.currentTimeMillis() + 10_000;
+        while (meterRegistry.get("gestionpertedoc.recu.prerendu").tag("outcome", "succes").counter().count() < 1
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertTrue(meterRegistry.get("gestionpertedoc.recu.prerendu").tag("outcome", "succes").counter().count() >= 1);
+
         //  Modifier statut
         mockMvc.perform(patch("/api/declarations/" + declarationId + "/statut")
                         .header("Authorization", "Bearer " + adminToken)
@@ -90,6 +107,104 @@ public class IntegrationTests {
 
         System.out.println(" Déclaration récupérée");
 
+        //  Récépissé PDF écrit directement dans la réponse
+        MvcResult pdfResult = mockMvc.perform(get("/api/declarations/" + declarationId + "/pdf")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_PDF))
+                .andExpect(header().string("Content-Disposition",
+                        "inline; filename=\"declaration-" + declarationId + ".pdf\""))
+                .andReturn();
+
+        byte[] pdf = pdfResult.getResponse().getContentAsByteArray();
+        assertTrue(new String(pdf, 0, 5).equals("%PDF-"));
+        assertEquals(pdf.length, pdfResult.getResponse().getContentLength());
+        // QR code signé imprimé sur le récépissé
+        assertTrue(new String(pdf, java.nio.charset.StandardCharsets.ISO_8859_1).contains("/Image"));
+
+        // Vérification publique (sans jeton d'authentification) : un QR falsifié est refusé
+        mockMvc.perform(get("/api/recus/verifier").param("jeton", "e30.AAAAAAAAAAAAAAAAAAAAAA"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.valide").value(false));
+
+        // Réimpression : récépissé inchangé servi par le cache, 304 si le client l'a déjà
+        String etag = pdfResult.getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        mockMvc.perform(get("/api/declarations/" + declarationId + "/pdf")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        assertTrue(meterRegistry.get("gestionpertedoc.recu.cache").tag("outcome", "trouve").counter().count() >= 1);
+
+        mockMvc.perform(get("/api/declarations/999999999/pdf")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNotFound());
+
+        System.out.println(" PDF OK (" + pdf.length + " octets)");
+
+        //  Liste paginée par curseur
+        mockMvc.perform(get("/api/declarations/actives")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .param("taille", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.taille").value(1))
+                .andExpect(jsonPath("$.declarations.length()").value(1))
+                .andExpect(jsonPath("$.pageSuivante").exists());
+
+        // Page du poste : filtre sur le poste recopié dans la déclaration
+        mockMvc.perform(get("/api/declarations/actives/poste")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .param("taille", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.declarations[0].id").value(declarationId));
+
+        mockMvc.perform(get("/api/declarations/actives")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .param("curseur", "pas-un-curseur"))
+                .andExpect(status().isBadRequest());
+
+        System.out.println(" Pagination OK");
+
+        //  Export en flux
+        mockMvc.perform(get("/api/declarations/export")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(content().string(org.hamcrest.Matchers.startsWith("id,numeroReference,")));
+
+        mockMvc.perform(get("/api/declarations/export")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("\"id\":" + declarationId)));
+
+        //  Récépissés du poste en archive ZIP
+        String aujourdhui = java.time.LocalDate.now().toString();
+        MvcResult zipResult = mockMvc.perform(get("/api/declarations/recus/zip")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .param("du", aujourdhui)
+                        .param("au", aujourdhui))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/zip"))
+                .andReturn();
+
+        java.util.List<String> entrees = new java.util.ArrayList<>();
+        try (java.util.zip.ZipInputStream zip = new java.util.zip.ZipInputStream(
+                new java.io.ByteArrayInputStream(zipResult.getResponse().getContentAsByteArray()))) {
+            for (java.util.zip.ZipEntry e; (e = zip.getNextEntry()) != null; ) entrees.add(e.getName());
+        }
+        String reference = JsonPath.read(createResult.getResponse().getContentAsString(), "$.declaration.numeroReference");
+        assertTrue(entrees.contains(reference + ".pdf"));
+        assertFalse(entrees.contains("erreurs.txt"));
+
+        mockMvc.perform(get("/api/declarations/recus/zip")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .param("du", "2025-01-01")
+                        .param("au", "2025-06-01"))
+                .andExpect(status().isBadRequest());
+
+        System.out.println(" Export OK");
+
         //  Suppression logique
         mockMvc.perform(delete("/api/declarations/" + declarationId)
                         .header("Authorization", "Bearer " + adminToken))
@@ -113,5 +228,66 @@ public class IntegrationTests {
                 .andExpect(jsonPath("$.success").value(true));
 
         System.out.println(" Stats dashboard OK");
+
+        //  Stats du poste de l'utilisateur connecté (agrégation unique)
+        mockMvc.perform(get("/api/declarations/poste/stats")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalDeclarations").value(org.hamcrest.Matchers.greaterThan(0)))
+                .andExpect(jsonPath("$.tauxTraitement").isNumber());
+
+        System.out.println(" Stats poste OK");
+
+        //  Emails mis en file (reçu + validation), expédiés en arrière-plan
+        mockMvc.perform(get("/api/system/emails")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.parStatut.EN_ATTENTE").exists())
+                .andExpect(jsonPath("$.depuisDemarrage.envoyes").exists());
+
+        System.out.println(" Outbox emails OK");
+
+        //  Métriques des chemins critiques
+        assertTrue(meterRegistry.get("gestionpertedoc.declaration.creation").tag("outcome", "succes").timer().count() >= 1);
+        assertTrue(meterRegistry.get("gestionpertedoc.declarant.requetes").summary().count() >= 1);
+        assertTrue(meterRegistry.get("gestionpertedoc.jwt.filtre").tag("outcome", "authentifie").timer().count() >= 1);
+        // Vue par poste : compteurs des services ; ni les timers ni les métriques HTTP ne portent le poste
+        assertTrue(meterRegistry.get("gestionpertedoc.declaration.creees").tag("poste", "1").counter().count() >= 1);
+        assertTrue(meterRegistry.find("gestionpertedoc.declaration.creation").tagKeys("poste").timers().isEmpty());
+        assertTrue(meterRegistry.find("http.server.requests").tagKeys("poste").timers().isEmpty());
+
+        System.out.println(" Métriques OK");
+    }
+
+    @Test
+    void smsPourDeclarantSansEmail() throws Exception {
+        // Numéro local, sans indicatif : envoyé au format international
+        String telephone = String.valueOf(60_000_000 + (System.nanoTime() & 0xFFFFFF));
+        String declarationJson = "{ \"typeDocument\": { \"id\": 1 }, \"numeroDocument\": \"S" + telephone + "\", " +
+                "\"datePerte\": \"2025-10-18\", \"lieuPerte\": \"Bamako\", \"circonstances\": \"Perdu au marché\", " +
+                "\"declarant\": { \"nom\": \"KEITA\", \"prenom\": \"Moussa\", \"telephone\": \"" + telephone + "\", " +
+                "\"adresse\": \"Kati\" } }";
+
+        MvcResult result = mockMvc.perform(post("/api/declarations")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(declarationJson))
+                .andExpect(status().isOk())
+                .andReturn();
+        String reference = JsonPath.read(result.getResponse().getContentAsString(), "$.declaration.numeroReference");
+
+        // Expédié en arrière-plan par le dispatcher planifié
+        long limite = System.currentTimeMillis() + 10_000;
+        while (passerelleSms.derniers().stream().noneMatch(sms -> sms.texte().contains(reference))) {
+            assertTrue(System.currentTimeMillis() < limite, "SMS non envoyé");
+            Thread.sleep(100);
+        }
+        assertTrue(passerelleSms.derniers().stream().anyMatch(sms ->
+                sms.numero().equals("+223" + telephone) && sms.texte().contains(reference)));
+
+        mockMvc.perform(get("/api/system/sms")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.depuisDemarrage.envoyes").value(org.hamcrest.Matchers.greaterThan(0)));
     }
 }
@@ -0,0 +1,35 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.security.services.LimiteurConnexionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LimiteurConnexionServiceTests {
+
+    @Test
+    void limiteParAdresseEtParCompte() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LimiteurConnexionService limiteur = new LimiteurConnexionService(meterRegistry, 60, 5, 3, 1024);
+
+        // Adresse : 5 tentatives puis refus, les autres adresses ne sont pas touchées
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiteur.autoriser("agent" + i + "@police.ml", "203.0.113.7").isEmpty());
+        }
+        LimiteurConnexionService.Refus refus = limiteur.autoriser("autre@police.ml", "203.0.113.7").orElseThrow();
+        assertEquals("ip", refus.motif());
+        assertEquals(60, refus.reessayerDansSecondes());
+        assertTrue(limiteur.autoriser("autre@police.ml", "203.0.113.8").isEmpty());
+
+        // Compte : 3 échecs puis refus, quelle que soit l'adresse et la casse de l'email
+        for (int i = 0; i < 3; i++) {
+            limiteur.enregistrerEchec("fatou.diop@police.ml");
+        }
+        assertEquals("compte", limiteur.autoriser(" Fatou.Diop@police.ml", "198.51.100.1").orElseThrow().motif());
+        assertTrue(limiteur.autoriser("moussa.keita@police.ml", "198.51.100.1").isEmpty());
+
+        assertEquals(1.0, meterRegistry.get("gestionpertedoc.connexion.refus").tag("motif", "ip").counter().count());
+        assertEquals(1.0, meterRegistry.get("gestionpertedoc.connexion.refus").tag("motif", "compte").counter().count());
+    }
+}
@@ -0,0 +1,138 @@
+package com.Smtd.GestionPerteDoc;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class MigrationsFlywayTests {
+
+    // Schémas jetables, à côté du schéma de l'application
+    private static final String HIBERNATE = "migration_hibernate";
+    private static final String V1 = "migration_v1";
+    private static final String NEUVE = "migration_neuve";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @AfterEach
+    void nettoyer() {
+        for (String schema : List.of(HIBERNATE, V1, NEUVE)) {
+            jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+        }
+    }
+
+    @Test
+    void v1ReproduitLeSchemaAvantFlyway() throws Exception {
+        schemaHibernate(HIBERNATE);
+        flyway(V1).target("1").load().migrate();
+
+        assertEquals(tables(HIBERNATE), tables(V1));
+        assertEquals(colonnes(HIBERNATE), colonnes(V1));
+        assertEquals(contraintes(HIBERNATE), contraintes(V1));
+        assertEquals(index(HIBERNATE), index(V1));
+    }
+
+    @Test
+    void baseAvantFlywayMiseANiveau() throws Exception {
+        // Base créée par Hibernate avant Flyway, sans historique
+        schemaHibernate(HIBERNATE);
+
+        // Démarrage avec la configuration de l'application : baseline en 1, puis V2 et suivantes
+        MigrateResult resultat = flyway(HIBERNATE).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+        assertTrue(resultat.success);
+        assertTrue(resultat.migrationsExecuted > 0);
+        assertEquals(0, flyway(HIBERNATE).load().info().pending().length);
+
+        // Même schéma qu'une installation neuve
+        flyway(NEUVE).load().migrate();
+        assertEquals(tables(NEUVE), tables(HIBERNATE));
+        assertEquals(colonnes(NEUVE), colonnes(HIBERNATE));
+        assertEquals(contraintes(NEUVE), contraintes(HIBERNATE));
+        assertEquals(index(NEUVE), index(HIBERNATE));
+        assertEquals(sequences(NEUVE), sequences(HIBERNATE));
+    }
+
+    // Schéma généré par Hibernate à partir des entités d'avant Flyway
+    private void schemaHibernate(String schema) throws Exception {
+        try (Connection connexion = dataSource.getConnection()) {
+            try (Statement requete = connexion.createStatement()) {
+                requete.execute("CREATE SCHEMA " + schema);
+                requete.execute("SET search_path TO " + schema);
+            }
+            try {
+                ScriptUtils.executeSqlScript(connexion, new ClassPathResource("db/schema_avant_flyway.sql"));
+            } finally {
+                try (Statement requete = connexion.createStatement()) {
+                    requete.execute("RESET search_path");
+                }
+            }
+        }
+    }
+
+    private FluentConfiguration flyway(String schema) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(schema)
+                .createSchemas(true)
+                .locations("classpath:db/migration");
+    }
+
+    // ---------------- Description du schéma ----------------
+    private List<String> tables(String schema) {
+        return jdbcTemplate.queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = ?"
+                        + " AND table_name <> 'flyway_schema_history' ORDER BY 1", String.class, schema);
+    }
+
+    // Type, taille, nullabilité et identité de chaque colonne
+    private List<String> colonnes(String schema) {
+        return jdbcTemplate.queryForList(
+                "SELECT table_name || '.' || column_name || ' ' || data_type || ' ' || is_nullable"
+                        + " || ' ' || coalesce(character_maximum_length::text, '') || ' ' || is_identity"
+                        + " FROM information_schema.columns WHERE table_schema = ?"
+                        + " AND table_name <> 'flyway_schema_history' ORDER BY 1", String.class, schema);
+    }
+
+    // Clés primaires, uniques, étrangères et contraintes CHECK, avec leur nom
+    private List<String> contraintes(String schema) {
+        return jdbcTemplate.queryForList(
+                "SELECT c.conrelid::regclass::text || ' ' || c.conname || ' ' || pg_get_constraintdef(c.oid)"
+                        + " FROM pg_constraint c JOIN pg_namespace n ON n.oid = c.connamespace"
+                        + " WHERE n.nspname = ? AND c.conname NOT LIKE 'flyway%' ORDER BY 1", String.class, schema)
+                .stream().map(c -> c.replace(schema + ".", "")).toList();
+    }
+
+    // Index explicites et index des contraintes
+    private List<String> index(String schema) {
+        return jdbcTemplate.queryForList(
+                "SELECT indexdef FROM pg_indexes WHERE schemaname = ?"
+                        + " AND tablename <> 'flyway_schema_history' ORDER BY indexname", String.class, schema)
+                .stream().map(i -> i.replace(schema + ".", "")).toList();
+    }
+
+    private List<String> sequences(String schema) {
+        return jdbcTemplate.queryForList(
+                "SELECT sequence_name || ' ' || increment FROM information_schema.sequences"
+                        + " WHERE sequence_schema = ? ORDER BY 1", String.class, schema);
+    }
+}
@@ -0,0 +1,90 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.services.NumeroReferenceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class NumeroReferenceServiceTests {
+
+    private static final int THREADS = 16;
+    private static final int REFERENCES_PAR_THREAD = 500;
+
+    @Autowired
+    private NumeroReferenceService numeroReferenceService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${gestionpertedoc.app.referenceTailleBloc}")
+    private int tailleBloc;
+
+    @Test
+    void referencesUniquesEntrePlusieursNoeuds() throws Exception {
+        // Deuxième instance partageant la même séquence : simule un second noeud
+        NumeroReferenceService autreNoeud = new NumeroReferenceService(jdbcTemplate, tailleBloc);
+        NumeroReferenceService[] noeuds = { numeroReferenceService, autreNoeud };
+
+        Set<String> references = ConcurrentHashMap.newKeySet();
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> taches = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            NumeroReferenceService noeud = noeuds[t % noeuds.length];
+            taches.add(pool.submit(() -> {
+                depart.await();
+                for (int i = 0; i < REFERENCES_PAR_THREAD; i++) {
+                    String reference = noeud.generateNumeroReference(null);
+                    assertTrue(references.add(reference), "Référence en double : " + reference);
+                }
+                return null;
+            }));
+        }
+
+        long sequenceAvant = valeurSequence();
+        depart.countDown();
+        for (Future<?> tache : taches) {
+            tache.get();
+        }
+        pool.shutdown();
+        long sequenceApres = valeurSequence();
+
+        int total = THREADS * REFERENCES_PAR_THREAD;
+        assertEquals(total, references.size());
+        assertTrue(references.stream().allMatch(r -> r.matches("DECL-BKO-\\d{4}-\\d{6,}")));
+
+        // Un seul appel à la séquence par bloc (plus le bloc entamé de chaque noeud)
+        long blocsReserves = (sequenceApres - sequenceAvant) / tailleBloc;
+        assertTrue(blocsReserves <= total / tailleBloc + noeuds.length,
+                "Trop de blocs réservés : " + blocsReserves);
+    }
+
+    @Test
+    void tailleDeBlocDifferenteDuPasRefuseeAuDemarrage() {
+        // Le noeud ne réaligne pas la séquence : il refuse de démarrer
+        assertThrows(IllegalStateException.class,
+                () -> new NumeroReferenceService(jdbcTemplate, tailleBloc + 1));
+        assertEquals(tailleBloc, jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema()"
+                        + " AND sequencename = 'declaration_reference_seq'", Long.class));
+    }
+
+    private long valeurSequence() {
+        return jdbcTemplate.queryForObject("SELECT last_value FROM declaration_reference_seq", Long.class);
+    }
+}
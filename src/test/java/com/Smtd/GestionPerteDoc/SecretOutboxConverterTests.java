@@ -0,0 +1,37 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.entities.SecretOutboxConverter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecretOutboxConverterTests {
+
+    @Test
+    void secretJamaisEnClairEnBase() {
+        SecretOutboxConverter converter = new SecretOutboxConverter("cle-test");
+        String jeton = "5f0c1d3e-8a2b-4c6d-9e7f-0a1b2c3d4e5f";
+
+        String colonne = converter.convertToDatabaseColumn(jeton);
+        assertFalse(colonne.contains(jeton));
+        assertTrue(colonne.length() <= 255);
+        assertEquals(jeton, converter.convertToEntityAttribute(colonne));
+        // Vecteur d'initialisation aléatoire : deux chiffrements d'un même secret diffèrent
+        assertNotEquals(colonne, converter.convertToDatabaseColumn(jeton));
+        assertNull(converter.convertToDatabaseColumn(null));
+    }
+
+    @Test
+    void valeurAnterieureOuCleChangee() {
+        SecretOutboxConverter converter = new SecretOutboxConverter("cle-test");
+
+        // Email mis en file avant le chiffrement : relu tel quel
+        assertEquals("Ab12Cd34", converter.convertToEntityAttribute("Ab12Cd34"));
+
+        // Autre clé ou valeur altérée : lu comme absent, sans exception au chargement
+        String colonne = converter.convertToDatabaseColumn("Ab12Cd34");
+        assertNull(new SecretOutboxConverter("autre-cle").convertToEntityAttribute(colonne));
+        assertNull(converter.convertToEntityAttribute(colonne.substring(0, colonne.length() - 4) + "AAAA"));
+        assertThrows(IllegalStateException.class, () -> new SecretOutboxConverter(" "));
+    }
+}
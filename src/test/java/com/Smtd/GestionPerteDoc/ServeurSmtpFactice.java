@@ -0,0 +1,111 @@
+package com.Smtd.GestionPerteDoc;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serveur SMTP minimal : accepte tous les messages, compte connexions et messages et garde
+// le contenu reçu. En mode refus, répond 421 et coupe la connexion, comme un serveur indisponible.
+final class ServeurSmtpFactice implements AutoCloseable {
+    final AtomicInteger connexions = new AtomicInteger();
+    final AtomicInteger messages = new AtomicInteger();
+    volatile boolean refuser;
+    private final List<String> contenus = new CopyOnWriteArrayList<>();
+    private final ServerSocket socket = new ServerSocket(0);
+
+    ServeurSmtpFactice() throws IOException {
+        Thread t = new Thread(this::accepter, "smtp-factice");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    int port() {
+        return socket.getLocalPort();
+    }
+
+    // Messages reçus, relus comme des emails MIME
+    List<MimeMessage> recus() throws MessagingException {
+        Session session = Session.getInstance(new Properties());
+        List<MimeMessage> recus = new ArrayList<>();
+        for (String contenu : contenus) {
+            recus.add(new MimeMessage(session, new ByteArrayInputStream(contenu.getBytes(StandardCharsets.UTF_8))));
+        }
+        return recus;
+    }
+
+    private void accepter() {
+        try {
+            while (true) {
+                Socket client = socket.accept();
+                connexions.incrementAndGet();
+                Thread t = new Thread(() -> dialoguer(client));
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (IOException e) {
+            // Serveur arrêté
+        }
+    }
+
+    private void dialoguer(Socket client) {
+        try (client;
+             BufferedReader entree = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter sortie = new PrintWriter(client.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            if (refuser) {
+                sortie.print("421 Service indisponible\r\n");
+                sortie.flush();
+                return;
+            }
+            repondre(sortie, "220 localhost ESMTP");
+            String ligne;
+            while ((ligne = entree.readLine()) != null) {
+                String commande = ligne.length() >= 4 ? ligne.substring(0, 4).toUpperCase() : ligne.toUpperCase();
+                switch (commande) {
+                    case "EHLO" -> repondre(sortie, "250-localhost\r\n250 8BITMIME");
+                    case "DATA" -> {
+                        repondre(sortie, "354 Fin par <CRLF>.<CRLF>");
+                        StringBuilder contenu = new StringBuilder();
+                        while ((ligne = entree.readLine()) != null && !ligne.equals(".")) {
+                            // Point doublé en début de ligne par le client (RFC 5321, 4.5.2)
+                            contenu.append(ligne.startsWith(".") ? ligne.substring(1) : ligne).append("\r\n");
+                        }
+                        contenus.add(contenu.toString());
+                        messages.incrementAndGet();
+                        repondre(sortie, "250 Message accepté");
+                    }
+                    case "QUIT" -> {
+                        repondre(sortie, "221 Au revoir");
+                        return;
+                    }
+                    default -> repondre(sortie, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // Client déconnecté
+        }
+    }
+
+    private static void repondre(PrintWriter sortie, String reponse) {
+        sortie.print(reponse + "\r\n");
+        sortie.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
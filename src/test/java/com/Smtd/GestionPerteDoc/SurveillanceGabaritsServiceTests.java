@@ -0,0 +1,110 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.entities.Declarant;
+import com.Smtd.GestionPerteDoc.entities.Declaration;
+import com.Smtd.GestionPerteDoc.entities.TypeDocument;
+import com.Smtd.GestionPerteDoc.services.CacheRecuService;
+import com.Smtd.GestionPerteDoc.services.RegistreGabaritsService;
+import com.Smtd.GestionPerteDoc.services.SignatureRecuService;
+import com.Smtd.GestionPerteDoc.services.SurveillanceGabaritsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SurveillanceGabaritsServiceTests {
+
+    @TempDir
+    Path gabarits;
+
+    @TempDir
+    Path recus;
+
+    @Test
+    void gabaritParTypeRechargeAChaud() throws Exception {
+        Declaration passeport = declaration(1L, "PASSEPORT");
+        Declaration cni = declaration(2L, "CNI");
+        RegistreGabaritsService registre = new RegistreGabaritsService();
+        CacheRecuService cache = new CacheRecuService(recus.toString(), 256,
+                new SignatureRecuService("cle-test", "", 10), registre, new SimpleMeterRegistry());
+        String versionPasseport = version(cache, passeport);
+        String versionCni = version(cache, cni);
+
+        SurveillanceGabaritsService surveillance = new SurveillanceGabaritsService(gabarits.toString(), registre);
+        invoquer(surveillance, "demarrer");
+        try {
+            // Nouveau gabarit déposé pour les passeports : pris en compte sans redémarrage
+            ecrireGabarit(gabarits.resolve("PASSEPORT.docx"), "Récépissé de perte de passeport {{numero_reference}}");
+            String versionChargee = attendreNouvelleVersion(cache, passeport, versionPasseport);
+            assertNotEquals(versionPasseport, versionChargee);
+            assertEquals(versionCni, version(cache, cni));
+            assertEquals("%PDF-", new String(Files.readAllBytes(cache.obtenir(passeport).fichier()), 0, 5));
+
+            // Fichier invalide : le gabarit chargé reste en place
+            Files.writeString(gabarits.resolve("PASSEPORT.docx"), "pas un docx");
+            Thread.sleep(1_000);
+            assertEquals(versionChargee, version(cache, passeport));
+
+            // Fichier retiré : retour au modèle de l'application
+            Files.delete(gabarits.resolve("PASSEPORT.docx"));
+            assertEquals(versionPasseport, attendreNouvelleVersion(cache, passeport, versionChargee));
+        } finally {
+            invoquer(surveillance, "arreter");
+        }
+    }
+
+    // Version du récépissé servi, lue dans le nom du fichier en cache : {id}-{version}-{etag}.pdf
+    private static String version(CacheRecuService cache, Declaration declaration) throws Exception {
+        return cache.obtenir(declaration).fichier().getFileName().toString().split("-")[1];
+    }
+
+    private static String attendreNouvelleVersion(CacheRecuService cache, Declaration declaration,
+                                                  String ancienne) throws Exception {
+        long limite = System.currentTimeMillis() + 15_000;
+        String version = version(cache, declaration);
+        while (version.equals(ancienne) && System.currentTimeMillis() < limite) {
+            Thread.sleep(100);
+            version = version(cache, declaration);
+        }
+        return version;
+    }
+
+    private static void ecrireGabarit(Path fichier, String texte) throws Exception {
+        try (XWPFDocument doc = new XWPFDocument(); OutputStream sortie = Files.newOutputStream(fichier)) {
+            doc.createParagraph().createRun().setText(texte);
+            doc.write(sortie);
+        }
+    }
+
+    private static void invoquer(Object cible, String methode) throws Exception {
+        Method m = cible.getClass().getDeclaredMethod(methode);
+        m.setAccessible(true);
+        m.invoke(cible);
+    }
+
+    private static Declaration declaration(Long id, String codeType) {
+        Declarant declarant = new Declarant();
+        declarant.setNom("DIOP");
+        declarant.setPrenom("Fatou");
+
+        TypeDocument type = new TypeDocument();
+        type.setCodeTypeDocument(codeType);
+        type.setLibelleTypeDocument(codeType);
+
+        Declaration declaration = new Declaration();
+        declaration.setId(id);
+        declaration.setNumeroReference("DECL-POSTE-001-2026-" + String.format("%06d", id));
+        declaration.setDeclarant(declarant);
+        declaration.setTypeDocument(type);
+        declaration.setDatePerte(new Date());
+        return declaration;
+    }
+}
@@ -0,0 +1,86 @@
+package com.Smtd.GestionPerteDoc;
+
+import com.Smtd.GestionPerteDoc.services.TransportSmtpService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransportSmtpServiceTests {
+
+    private ServeurSmtpFactice serveur;
+
+    @AfterEach
+    void arreter() throws IOException {
+        if (serveur != null) serveur.close();
+    }
+
+    @Test
+    void plusieursMessagesParConnexion() throws Exception {
+        serveur = new ServeurSmtpFactice();
+        TransportSmtpService transport = transport(serveur.port(), 5);
+
+        for (int i = 0; i < 5; i++) {
+            transport.envoyer(message(transport, "Récépissé " + i));
+        }
+
+        assertEquals(5, serveur.messages.get());
+        assertEquals(1, serveur.connexions.get());
+    }
+
+    @Test
+    void disjoncteurOuvertPuisRefermeApresEssai() throws Exception {
+        serveur = new ServeurSmtpFactice();
+        serveur.refuser = true;
+        TransportSmtpService transport = transport(serveur.port(), 2);
+
+        assertThrows(MessagingException.class, () -> transport.envoyer(message(transport, "a")));
+        assertThrows(MessagingException.class, () -> transport.envoyer(message(transport, "b")));
+        assertFalse(transport.disponible());
+
+        // Circuit ouvert : échec immédiat, sans connexion au serveur
+        int connexions = serveur.connexions.get();
+        long debut = System.nanoTime();
+        MessagingException rejet = assertThrows(MessagingException.class, () -> transport.envoyer(message(transport, "c")));
+        assertTrue(rejet.getMessage().contains("circuit ouvert"));
+        assertTrue(System.nanoTime() - debut < 50_000_000L);
+        assertEquals(connexions, serveur.connexions.get());
+
+        // Serveur rétabli : après le délai, l'envoi d'essai referme le circuit
+        serveur.refuser = false;
+        Thread.sleep(600);
+        assertTrue(transport.disponible());
+        transport.envoyer(message(transport, "d"));
+        assertEquals(1, serveur.messages.get());
+        assertTrue(transport.disponible());
+    }
+
+    private static TransportSmtpService transport(int port, int seuilEchecs) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        Properties proprietes = new Properties();
+        proprietes.put("mail.smtp.connectiontimeout", "2000");
+        proprietes.put("mail.smtp.timeout", "2000");
+        mailSender.setJavaMailProperties(proprietes);
+        return new TransportSmtpService(mailSender, new SimpleMeterRegistry(), 2, 100, 60_000, 1_000, seuilEchecs, 500);
+    }
+
+    private static MimeMessage message(TransportSmtpService transport, String sujet) throws MessagingException {
+        MimeMessage message = transport.creerMessage();
+        message.setFrom(new InternetAddress("poste@test.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("fatou.diop@test.com"));
+        message.setSubject(sujet, "UTF-8");
+        message.setText("Bonjour", "UTF-8");
+        return message;
+    }
+}
@@ -0,0 +1,135 @@
+-- =====================================================================
+-- Schéma d'avant Flyway, référence de MigrationsFlywayTests.
+-- Script généré par Hibernate 6.6.29 (version de Spring Boot 3.5.6, celle
+-- de la base de code d'origine) à partir des entités de cette base de code,
+-- sans Flyway : action "create" de la génération de schéma, dialecte
+-- PostgreSQL, stratégies de nommage de Spring Boot. ddl-auto=update sur une
+-- base vide crée les tables avec le même générateur.
+-- Ne pas retoucher à la main : V1 doit reproduire ce schéma.
+-- =====================================================================
+
+    create table declarants (
+        id uuid not null,
+        adresse varchar(255) not null,
+        date_naissance date,
+        email varchar(150) unique,
+        lieu_naissance varchar(255),
+        nom varchar(100) not null,
+        num_carte_identite varchar(255) unique,
+        num_nina varchar(255) unique,
+        num_passeport varchar(255) unique,
+        prenom varchar(100) not null,
+        telephone varchar(20) not null unique,
+        primary key (id)
+    );
+
+    create table declarations (
+        id bigint generated by default as identity,
+        circonstances varchar(500),
+        cree_le timestamp(6) not null,
+        date_declaration date not null,
+        date_perte date,
+        lieu_perte varchar(255),
+        modifie_le timestamp(6),
+        numero_document varchar(100),
+        numero_reference varchar(50) not null unique,
+        statut varchar(20) not null check (statut in ('BROUILLON','ENREGISTREE','VALIDEE','REJETEE','SUPPRIME')),
+        supprime boolean not null,
+        supprime_le timestamp(6),
+        cree_par_id bigint,
+        declarant_id uuid not null,
+        modifie_par_id bigint,
+        supprime_par_id bigint,
+        type_document_id bigint not null,
+        utilisateur_id bigint,
+        primary key (id)
+    );
+
+    create table postes_police (
+        id bigint generated by default as identity,
+        actif boolean not null,
+        adresse varchar(255) not null,
+        code_unique varchar(50) not null unique,
+        nom varchar(150) not null,
+        telephone varchar(20),
+        primary key (id)
+    );
+
+    create table roles (
+        id bigint generated by default as identity,
+        libelle varchar(100) not null unique,
+        primary key (id)
+    );
+
+    create table types_document (
+        id bigint generated by default as identity,
+        code_type_document varchar(255) not null unique,
+        libelle_type_document varchar(255) not null,
+        primary key (id)
+    );
+
+    create table utilisateur_role (
+        utilisateur_id bigint not null,
+        role_id bigint not null,
+        primary key (utilisateur_id, role_id)
+    );
+
+    create table utilisateurs (
+        id bigint generated by default as identity,
+        actif boolean not null,
+        email varchar(150) not null unique,
+        is_deleted boolean not null,
+        matricule varchar(50) not null unique,
+        mot_de_passe_hash varchar(255) not null,
+        nom varchar(100) not null,
+        prenom varchar(100) not null,
+        reset_password_expires timestamp(6),
+        reset_token varchar(255),
+        poste_id bigint not null,
+        primary key (id)
+    );
+
+    alter table if exists declarations 
+       add constraint FK5cnvjpiomt1f2yokq17s4vw7q 
+       foreign key (cree_par_id) 
+       references utilisateurs;
+
+    alter table if exists declarations 
+       add constraint FK2v0vnf1ygmp3n6abcccfk7ry2 
+       foreign key (declarant_id) 
+       references declarants;
+
+    alter table if exists declarations 
+       add constraint FK44upsrde28lqy4iw8f9lnmfo2 
+       foreign key (modifie_par_id) 
+       references utilisateurs;
+
+    alter table if exists declarations 
+       add constraint FKqnwm4odunc4i5e6y1gx7ncn2v 
+       foreign key (supprime_par_id) 
+       references utilisateurs;
+
+    alter table if exists declarations 
+       add constraint FK25h9s29oue856gnfcxa6tu9b5 
+       foreign key (type_document_id) 
+       references types_document;
+
+    alter table if exists declarations 
+       add constraint FKfi221lb2tg5gq446hdu0tkuyb 
+       foreign key (utilisateur_id) 
+       references utilisateurs;
+
+    alter table if exists utilisateur_role 
+       add constraint FKmda2kyc94w9467td7ikoqnaun 
+       foreign key (role_id) 
+       references roles;
+
+    alter table if exists utilisateur_role 
+       add constraint FKp0qoh4jgf02pqu2g4iyr22h50 
+       foreign key (utilisateur_id) 
+       references utilisateurs;
+
+    alter table if exists utilisateurs 
+       add constraint FKlyhubyioxeg6yx1irkyly9if 
+       foreign key (poste_id) 
+       references postes_police;